@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import examples.tokenization.BoundaryVariable;
+import examples.tokenization.TokenizationTemplate;
+import factors.Factor;
+import factors.FactorPool;
+import factors.patterns.SingleVariablePattern;
+
+/**
+ * Selection of the factor patterns that are not yet in the factor pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class FactorPoolBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int numberOfPatterns;
+
+	/**
+	 * Fraction of the generated patterns that are already in the pool.
+	 */
+	@Param({ "0.5", "0.99" })
+	public double knownFraction;
+
+	private FactorPool factorPool;
+	private Set<SingleVariablePattern<BoundaryVariable>> generatedPatterns;
+
+	@Setup
+	public void setup() {
+		TokenizationTemplate template = new TokenizationTemplate();
+		factorPool = new FactorPool();
+		generatedPatterns = new HashSet<>();
+		Set<Factor<SingleVariablePattern<BoundaryVariable>>> knownFactors = new HashSet<>();
+		for (int i = 0; i < numberOfPatterns; i++) {
+			SingleVariablePattern<BoundaryVariable> pattern = new SingleVariablePattern<>(template,
+					new BoundaryVariable(i));
+			generatedPatterns.add(pattern);
+			if (i < numberOfPatterns * knownFraction) {
+				knownFactors.add(new Factor<>(pattern));
+			}
+		}
+		factorPool.addFactors(knownFactors);
+	}
+
+	@Benchmark
+	public List<SingleVariablePattern<BoundaryVariable>> extractNewFactorPatterns() {
+		return factorPool.extractNewFactorPatterns(generatedPatterns);
+	}
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import examples.tokenization.Sentence;
+import examples.tokenization.TokenState;
+import examples.tokenization.TokenizedSentence;
+import factors.FactorPool;
+import learning.Model;
+import learning.scorer.DefaultScorer;
+
+/**
+ * Application of the templates to all successor states of one sampling step
+ * (pattern generation and computation of new factors).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class ModelBenchmark {
+
+	@Param({ "20", "200" })
+	public int numberOfWords;
+
+	/**
+	 * If true, the factor pool is emptied before each invocation so that all
+	 * factors need to be computed. Otherwise, only pattern generation and the
+	 * lookup of existing factors is measured.
+	 */
+	@Param({ "true", "false" })
+	public boolean coldFactorPool;
+
+	@Param({ "true", "false" })
+	public boolean multiThreaded;
+
+	private Model<Sentence, TokenState> model;
+	private List<TokenState> states;
+	private TokenizedSentence sentence;
+	private FactorPool factorPool;
+
+	@Setup
+	public void setup() {
+		model = TokenizationFixture.newModel(new DefaultScorer());
+		model.setMultiThreaded(multiThreaded);
+		sentence = SyntheticCorpus.tokenizedSentence(numberOfWords, new Random(42));
+		states = TokenizationFixture.neighbourhood(sentence);
+		factorPool = states.get(0).getFactorGraph().getFactorPool();
+		model.applyToStates(states, factorPool, sentence);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearFactorPool() {
+		if (coldFactorPool) {
+			factorPool.clear();
+		}
+	}
+
+	@Benchmark
+	public List<TokenState> applyToStates() {
+		model.applyToStates(states, factorPool, sentence);
+		return states;
+	}
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learning.DenseVector;
+import learning.Vector;
+import learning.optimizer.Adam;
+import learning.optimizer.Optimizer;
+import learning.optimizer.SGD;
+
+/**
+ * A single optimizer step for a sparse gradient and a large weight vector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class OptimizerBenchmark {
+
+	@Param({ "adam", "sgd", "sgdMomentum" })
+	public String optimizerType;
+
+	@Param({ "10000", "1000000" })
+	public int numberOfWeights;
+
+	@Param({ "100" })
+	public int gradientSize;
+
+	@Param({ "sparse", "dense" })
+	public String weightsBackend;
+
+	private Optimizer optimizer;
+	private Vector theta;
+	private Vector gradient;
+
+	@Setup
+	public void setup() {
+		switch (optimizerType) {
+		case "sgd":
+			optimizer = new SGD(0.001, 0, 0, false);
+			break;
+		case "sgdMomentum":
+			optimizer = new SGD(0.001, 0.9, 0, true);
+			break;
+		default:
+			optimizer = new Adam();
+		}
+		Random random = new Random(42);
+		Vector emptyWeights = "dense".equals(weightsBackend) ? new DenseVector() : new Vector();
+		theta = SyntheticCorpus.randomVector(emptyWeights, numberOfWeights, numberOfWeights, random);
+		gradient = SyntheticCorpus.randomVector(new Vector(), gradientSize, numberOfWeights, random);
+	}
+
+	@Benchmark
+	public Vector getUpdates() {
+		return optimizer.getUpdates(theta, gradient);
+	}
+}
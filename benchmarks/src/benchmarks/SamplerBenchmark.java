@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import examples.tokenization.Sentence;
+import examples.tokenization.TokenState;
+import examples.tokenization.Tokenization;
+import examples.tokenization.TokenizationInitializer;
+import examples.tokenization.TokenizedSentence;
+import learning.Learner;
+import learning.Model;
+import learning.scorer.DefaultScorer;
+import sampling.DefaultSampler;
+
+/**
+ * A complete sampling chain of the tokenization example, for prediction and
+ * for training (including the model updates).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class SamplerBenchmark {
+
+	@Param({ "20", "100" })
+	public int numberOfWords;
+
+	@Param({ "20" })
+	public int numberOfSamplingSteps;
+
+	@Param({ "false", "true" })
+	public boolean deltaScoring;
+
+	private DefaultSampler<Sentence, TokenState, Tokenization> sampler;
+	private Learner<TokenState> learner;
+	private TokenizationInitializer initializer;
+	private TokenizedSentence sentence;
+
+	@Setup
+	public void setup() {
+		Model<Sentence, TokenState> model = TokenizationFixture.newModel(new DefaultScorer());
+		TokenizationFixture.train(model);
+		model.setDeltaScoring(deltaScoring);
+		sampler = TokenizationFixture.newSampler(model, numberOfSamplingSteps);
+		learner = TokenizationFixture.newLearner(model);
+		initializer = new TokenizationInitializer();
+		sentence = SyntheticCorpus.tokenizedSentence(numberOfWords, new Random(42));
+	}
+
+	@Benchmark
+	public List<TokenState> predictionChain() {
+		return sampler.generateChain(initializer.getInitialState(sentence));
+	}
+
+	@Benchmark
+	public List<TokenState> trainingChain() {
+		return sampler.generateChain(initializer.getInitialState(sentence), sentence.getGoldResult(), learner);
+	}
+}
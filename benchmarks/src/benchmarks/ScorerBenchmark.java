@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import examples.tokenization.Sentence;
+import examples.tokenization.TokenState;
+import examples.tokenization.TokenizedSentence;
+import learning.Model;
+import learning.scorer.AbstractAdditiveScorer;
+import learning.scorer.DefaultScorer;
+import learning.scorer.LinearScorer;
+import learning.scorer.NumericallyStableScorer;
+import learning.scorer.Scorer;
+import learning.scorer.SoftplusScorer;
+import templates.AbstractTemplate;
+
+/**
+ * Scoring of all successor states of one sampling step with each scorer
+ * implementation. The factors of the states are computed beforehand. For the
+ * additive scorers, the states are scored either in one batch or state by
+ * state (see AbstractAdditiveScorer.setBatchScoring()), and the cached dot
+ * products of the factors are either reused (warm) or invalidated before each
+ * call (cold), as after a weight update during training.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class ScorerBenchmark {
+
+	@Param({ "default", "linear", "softplus", "numericallyStable" })
+	public String scorerType;
+
+	@Param({ "20", "200" })
+	public int numberOfWords;
+
+	@Param({ "true", "false" })
+	public boolean batchScoring;
+
+	@Param({ "warm", "cold" })
+	public String cache;
+
+	private Scorer scorer;
+	private Model<Sentence, TokenState> model;
+	private List<TokenState> states;
+
+	@Setup
+	public void setup() {
+		scorer = newScorer(scorerType);
+		if (scorer instanceof AbstractAdditiveScorer) {
+			((AbstractAdditiveScorer) scorer).setBatchScoring(batchScoring);
+		}
+		model = TokenizationFixture.newModel(scorer);
+		TokenizationFixture.train(model);
+		TokenizedSentence sentence = SyntheticCorpus.tokenizedSentence(numberOfWords, new Random(42));
+		states = TokenizationFixture.neighbourhood(sentence);
+		model.applyToStates(states, states.get(0).getFactorGraph().getFactorPool(), sentence);
+	}
+
+	private static Scorer newScorer(String scorerType) {
+		switch (scorerType) {
+		case "linear":
+			return new LinearScorer();
+		case "softplus":
+			return new SoftplusScorer();
+		case "numericallyStable":
+			return new NumericallyStableScorer();
+		default:
+			return new DefaultScorer();
+		}
+	}
+
+	@Benchmark
+	public List<TokenState> score() {
+		if (cache.equals("cold")) {
+			for (AbstractTemplate<Sentence, TokenState, ?> t : model.getTemplates()) {
+				t.weightsChanged();
+			}
+		}
+		scorer.score(states, false);
+		return states;
+	}
+}
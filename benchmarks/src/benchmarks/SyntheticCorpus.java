@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import examples.tokenization.Tokenization;
+import examples.tokenization.TokenizedSentence;
+import learning.Vector;
+
+/**
+ * Generates synthetic data of arbitrary size for the benchmarks. All
+ * generators are deterministic w.r.t. the given seed or random generator.
+ */
+public class SyntheticCorpus {
+
+	private static final Pattern TOKEN_PATTERN = Pattern.compile("\\w+|\\s+");
+	private static final String[] PUNCTUATION = { ".", ",", "!", "?", "-", "'" };
+	private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+	private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static final String DIGITS = "0123456789";
+
+	/**
+	 * Creates a corpus of sentences that are tokenized like the training data
+	 * of the tokenization example.
+	 *
+	 * @param numberOfSentences
+	 * @param numberOfWords
+	 *            words per sentence
+	 * @param seed
+	 * @return
+	 */
+	public static List<TokenizedSentence> tokenizedSentences(int numberOfSentences, int numberOfWords, long seed) {
+		Random random = new Random(seed);
+		List<TokenizedSentence> sentences = new ArrayList<>(numberOfSentences);
+		for (int i = 0; i < numberOfSentences; i++) {
+			sentences.add(tokenizedSentence(numberOfWords, random));
+		}
+		return sentences;
+	}
+
+	public static TokenizedSentence tokenizedSentence(int numberOfWords, Random random) {
+		String text = sentence(numberOfWords, random);
+		TokenizedSentence sentence = new TokenizedSentence(text);
+		Tokenization tokenization = new Tokenization();
+		Matcher m = TOKEN_PATTERN.matcher(text);
+		while (m.find()) {
+			tokenization.addBoundary(m.start());
+			tokenization.addBoundary(m.end());
+		}
+		sentence.setTokenization(tokenization);
+		return sentence;
+	}
+
+	/**
+	 * Creates a random sentence of words, numbers and punctuation separated by
+	 * whitespace.
+	 *
+	 * @param numberOfWords
+	 * @param random
+	 * @return
+	 */
+	public static String sentence(int numberOfWords, Random random) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < numberOfWords; i++) {
+			if (i > 0) {
+				builder.append(' ');
+			}
+			if (random.nextInt(10) == 0) {
+				append(builder, DIGITS, 1 + random.nextInt(4), random);
+			} else {
+				append(builder, UPPER, i == 0 || random.nextInt(8) == 0 ? 1 : 0, random);
+				append(builder, LOWER, 1 + random.nextInt(8), random);
+			}
+			if (random.nextInt(6) == 0) {
+				builder.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+			}
+		}
+		builder.append('.');
+		return builder.toString();
+	}
+
+	private static void append(StringBuilder builder, String characters, int length, Random random) {
+		for (int i = 0; i < length; i++) {
+			builder.append(characters.charAt(random.nextInt(characters.length())));
+		}
+	}
+
+	/**
+	 * Creates a vector with (up to) <i>numberOfFeatures</i> random features
+	 * out of a feature space of size <i>featureSpace</i> and values in [-1,
+	 * 1).
+	 *
+	 * @param vector
+	 *            the (empty) vector to fill
+	 * @param numberOfFeatures
+	 * @param featureSpace
+	 * @param random
+	 * @return
+	 */
+	public static Vector randomVector(Vector vector, int numberOfFeatures, int featureSpace, Random random) {
+		for (int i = 0; i < numberOfFeatures; i++) {
+			vector.set("F" + random.nextInt(featureSpace), 2 * random.nextDouble() - 1);
+		}
+		return vector;
+	}
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import examples.tokenization.Sentence;
+import examples.tokenization.TokenBoundaryExplorer;
+import examples.tokenization.TokenState;
+import examples.tokenization.Tokenization;
+import examples.tokenization.TokenizationInitializer;
+import examples.tokenization.TokenizationObjectiveFunction;
+import examples.tokenization.TokenizationTemplate;
+import examples.tokenization.TokenizedSentence;
+import learning.AdvancedLearner;
+import learning.Learner;
+import learning.Model;
+import learning.Trainer;
+import learning.optimizer.Adam;
+import learning.scorer.Scorer;
+import sampling.DefaultSampler;
+import sampling.Explorer;
+import templates.AbstractTemplate;
+
+/**
+ * Builds the components of the tokenization example for the benchmarks.
+ */
+public class TokenizationFixture {
+
+	public static Model<Sentence, TokenState> newModel(Scorer scorer) {
+		List<AbstractTemplate<Sentence, TokenState, ?>> templates = new ArrayList<>();
+		templates.add(new TokenizationTemplate());
+		Model<Sentence, TokenState> model = new Model<>(scorer, templates);
+		model.setMultiThreaded(false);
+		return model;
+	}
+
+	public static DefaultSampler<Sentence, TokenState, Tokenization> newSampler(Model<Sentence, TokenState> model,
+			int numberOfSamplingSteps) {
+		List<Explorer<TokenState>> explorers = new ArrayList<>();
+		explorers.add(new TokenBoundaryExplorer());
+		return new DefaultSampler<>(model, new TokenizationObjectiveFunction(), explorers, numberOfSamplingSteps);
+	}
+
+	public static Learner<TokenState> newLearner(Model<Sentence, TokenState> model) {
+		return new AdvancedLearner<>(model, new Adam());
+	}
+
+	/**
+	 * Trains the model for one epoch on a small synthetic corpus so that the
+	 * templates have realistic, non-zero weights.
+	 *
+	 * @param model
+	 */
+	public static void train(Model<Sentence, TokenState> model) {
+		List<TokenizedSentence> sentences = SyntheticCorpus.tokenizedSentences(20, 8, 42);
+		new Trainer().train(newSampler(model, 20), new TokenizationInitializer(), newLearner(model), sentences, 1);
+	}
+
+	/**
+	 * Returns all successor states of a state that contains the gold token
+	 * boundaries of the given sentence, together with this state itself (as
+	 * the last element).
+	 *
+	 * @param sentence
+	 * @return
+	 */
+	public static List<TokenState> neighbourhood(TokenizedSentence sentence) {
+		TokenState state = new TokenState(sentence);
+		state.tokenization = new Tokenization(sentence.getGoldResult());
+		List<TokenState> states = new ArrayList<>(new TokenBoundaryExplorer().getNextStates(state));
+		states.add(state);
+		return states;
+	}
+}
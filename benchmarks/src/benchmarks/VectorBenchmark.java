@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import learning.DenseVector;
+import learning.Vector;
+
+/**
+ * Dot products and sums of a sparse feature vector and a (large) weight
+ * vector, as computed for every factor during scoring and learning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-benchmarks.xml")
+public class VectorBenchmark {
+
+	@Param({ "10", "100" })
+	public int featuresPerFactor;
+
+	@Param({ "1000", "100000" })
+	public int numberOfWeights;
+
+	@Param({ "sparse", "dense" })
+	public String weightsBackend;
+
+	private Vector features;
+	private Vector weights;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		features = SyntheticCorpus.randomVector(new Vector(), featuresPerFactor, numberOfWeights, random);
+		Vector emptyWeights = "dense".equals(weightsBackend) ? new DenseVector() : new Vector();
+		weights = SyntheticCorpus.randomVector(emptyWeights, numberOfWeights, numberOfWeights, random);
+	}
+
+	@Benchmark
+	public double dotProduct() {
+		return features.dotProduct(weights);
+	}
+
+	@Benchmark
+	public Vector addFeatures() {
+		return features.add(features);
+	}
+
+	@Benchmark
+	public Vector subFeatures() {
+		return features.sub(features);
+	}
+
+	@Benchmark
+	public Vector addToWeights() {
+		return weights.add(features);
+	}
+}
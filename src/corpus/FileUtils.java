@@ -6,9 +6,12 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class FileUtils {
 
@@ -38,6 +41,44 @@ public class FileUtils {
 		return lines;
 	}
 
+	/**
+	 * Returns the lines of the given file as a lazily populated stream. In
+	 * contrast to <b>readLines</b>, the file is not read into memory at once
+	 * but line by line while the stream is consumed. The stream should be
+	 * closed to release the underlying file.
+	 * 
+	 * @param filepath
+	 * @return
+	 * @throws IOException
+	 */
+	public static Stream<String> streamLines(String filepath) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(filepath));
+		return reader.lines().onClose(() -> {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Returns an iterator over the contents of the given files. Each file is
+	 * only read when the iterator reaches it.
+	 * 
+	 * @param files
+	 * @return
+	 */
+	public static Iterator<String> readFilesLazily(List<File> files) {
+		return files.stream().map(file -> {
+			try {
+				return readFile(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}).iterator();
+	}
+
 	public static void writeFile(File file, String content) throws IOException {
 		writeFile(file, content, false);
 	}
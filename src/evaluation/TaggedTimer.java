@@ -7,6 +7,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * @deprecated This timer has a millisecond resolution and uses random job
+ *             ids. Use the timers of metrics.MetricsRegistry instead.
+ */
+@Deprecated
 public class TaggedTimer {
 
 	private static Logger log = LogManager.getFormatterLogger();
@@ -1,13 +1,20 @@
 package examples.tokenization;
 
+import utility.VariableID;
 import variables.AbstractVariable;
 
 public class BoundaryVariable extends AbstractVariable implements Comparable<BoundaryVariable> {
 
 	public final int boundaryPosition;
 
+	/**
+	 * Boundaries are identified by their position, so the ID of a boundary
+	 * variable is derived from its position (like equals()).
+	 * 
+	 * @param boundaryPosition
+	 */
 	public BoundaryVariable(int boundaryPosition) {
-		super();
+		super(new VariableID("B" + boundaryPosition));
 		this.boundaryPosition = boundaryPosition;
 	}
 
@@ -84,6 +84,7 @@ public class Main {
 		model.setMultiThreaded(true);
 		model.setForceFactorComputation(false);
 		model.setSequentialScoring(false);
+		model.setDeltaScoring(true);
 
 		/*
 		 * Create an Initializer that is responsible for providing an initial
@@ -191,8 +192,8 @@ public class Main {
 			while (m.find()) {
 				int from = m.start();
 				int to = m.end();
-				tokenization.tokenBoundaries.put(from, new BoundaryVariable(from));
-				tokenization.tokenBoundaries.put(to, new BoundaryVariable(to));
+				tokenization.addBoundary(from);
+				tokenization.addBoundary(to);
 			}
 			tokenizedSentence.setTokenization(tokenization);
 			tokenizedSentences.add(tokenizedSentence);
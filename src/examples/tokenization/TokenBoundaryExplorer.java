@@ -1,14 +1,12 @@
 package examples.tokenization;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import sampling.Explorer;
+import sampling.LazyExplorer;
+import sampling.Proposal;
 
-public class TokenBoundaryExplorer implements Explorer<TokenState> {
+public class TokenBoundaryExplorer implements LazyExplorer<TokenState> {
 	private static Logger log = LogManager.getFormatterLogger();
 
 	/**
@@ -20,20 +18,26 @@ public class TokenBoundaryExplorer implements Explorer<TokenState> {
 	}
 
 	@Override
-	public List<TokenState> getNextStates(TokenState currentState) {
-		List<TokenState> nextStates = new ArrayList<>();
-		for (int i = 0; i < currentState.getInstance().text.length(); i++) {
-			if (currentState.tokenization.tokenBoundaries.containsKey(i)) {
-				TokenState generatedState = new TokenState(currentState);
-				generatedState.tokenization.tokenBoundaries.remove(i);
-				nextStates.add(generatedState);
+	public int getNumberOfProposals(TokenState currentState) {
+		return currentState.getInstance().text.length();
+	}
+
+	/**
+	 * The i-th proposal toggles the token boundary at character position i.
+	 * The toggled boundary is reported as the only changed variable of the
+	 * generated state.
+	 */
+	@Override
+	public Proposal<TokenState> getProposal(TokenState currentState, int i) {
+		return () -> {
+			TokenState generatedState = new TokenState(currentState);
+			if (currentState.tokenization.hasBoundary(i)) {
+				generatedState.markAsChanged(generatedState.tokenization.removeBoundary(i));
 			} else {
-				TokenState generatedState = new TokenState(currentState);
-				generatedState.tokenization.tokenBoundaries.put(i, new BoundaryVariable(i));
-				nextStates.add(generatedState);
+				generatedState.markAsChanged(generatedState.tokenization.addBoundary(i));
 			}
-		}
-		return nextStates;
+			return generatedState;
+		};
 	}
 
 }
@@ -1,16 +1,51 @@
 package examples.tokenization;
 
-import java.util.TreeMap;
+import variables.PersistentIntMap;
 
 public class Tokenization {
-	public TreeMap<Integer, BoundaryVariable> tokenBoundaries;
+	/**
+	 * The token boundaries by their character position. Since the map is
+	 * persistent, copies of a tokenization share it and each modification
+	 * replaces it with a modified version that shares most of its structure
+	 * with the original.
+	 */
+	public PersistentIntMap<BoundaryVariable> tokenBoundaries;
 
 	public Tokenization() {
-		this.tokenBoundaries = new TreeMap<>();
+		this.tokenBoundaries = PersistentIntMap.empty();
 	}
 
 	public Tokenization(Tokenization tokenization) {
-		this.tokenBoundaries = new TreeMap<>(tokenization.tokenBoundaries);
+		this.tokenBoundaries = tokenization.tokenBoundaries;
+	}
+
+	public boolean hasBoundary(int position) {
+		return tokenBoundaries.containsKey(position);
+	}
+
+	/**
+	 * Adds a boundary at the given position and returns its variable.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	public BoundaryVariable addBoundary(int position) {
+		BoundaryVariable boundary = new BoundaryVariable(position);
+		tokenBoundaries = tokenBoundaries.put(position, boundary);
+		return boundary;
+	}
+
+	/**
+	 * Removes the boundary at the given position and returns its variable or
+	 * null if there is no boundary at this position.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	public BoundaryVariable removeBoundary(int position) {
+		BoundaryVariable boundary = tokenBoundaries.get(position);
+		tokenBoundaries = tokenBoundaries.remove(position);
+		return boundary;
 	}
 
 	@Override
@@ -1,9 +1,5 @@
 package examples.tokenization;
 
-import java.util.Set;
-
-import com.google.common.collect.Sets;
-
 import learning.ObjectiveFunction;
 
 public class TokenizationObjectiveFunction extends ObjectiveFunction<TokenState, Tokenization> {
@@ -25,11 +21,10 @@ public class TokenizationObjectiveFunction extends ObjectiveFunction<TokenState,
 		} else if (goldResult.tokenBoundaries.size() != 0 && state.tokenization.tokenBoundaries.size() == 0) {
 			return 0;
 		}
-		Set<Integer> correctBoundaries = Sets.intersection(state.tokenization.tokenBoundaries.keySet(),
-				goldResult.tokenBoundaries.keySet());
-		double precision = correctBoundaries.size();
+		int correctBoundaries = state.tokenization.tokenBoundaries.countCommonKeys(goldResult.tokenBoundaries);
+		double precision = correctBoundaries;
 		precision /= (state.tokenization.tokenBoundaries.size());
-		double recall = correctBoundaries.size();
+		double recall = correctBoundaries;
 		recall /= (goldResult.tokenBoundaries.size());
 
 		double g1 = Math.sqrt(precision * recall);
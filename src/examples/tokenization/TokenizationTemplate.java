@@ -1,18 +1,29 @@
 package examples.tokenization;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import factors.Factor;
 import factors.patterns.SingleVariablePattern;
-import learning.Vector;
-import templates.AbstractTemplate;
+import templates.FeatureEmittingTemplate;
+import templates.FeatureEmitter;
+import variables.AbstractVariable;
 
 public class TokenizationTemplate
-		extends AbstractTemplate<Sentence, TokenState, SingleVariablePattern<BoundaryVariable>> {
+		extends FeatureEmittingTemplate<Sentence, TokenState, SingleVariablePattern<BoundaryVariable>> {
 
 	public int windowSize = 3;
 
+	private final int isPunctuationFeature = registerFeature("CHAR@", "_IS_PUNCTUATION");
+	private final int isWhitespaceFeature = registerFeature("CHAR@", "_IS_WHITESPACE");
+	private final int isHyphenFeature = registerFeature("CHAR@", "_IS_HYPHEN");
+	private final int isDigitFeature = registerFeature("CHAR@", "_IS_DIGIT");
+	private final int isLetterFeature = registerFeature("CHAR@", "_IS_LETTER");
+	private final int isLowerFeature = registerFeature("CHAR@", "_IS_LOWER");
+	private final int isUpperFeature = registerFeature("CHAR@", "_IS_UPPER");
+	private final int isOtherFeature = registerFeature("CHAR@", "_IS_OTHER");
+
 	/**
 	 * This template generates factors for each character position and computes
 	 * features for the local neighborhood.
@@ -33,17 +44,32 @@ public class TokenizationTemplate
 		return factors;
 	}
 
+	/**
+	 * Each boundary has its own factor, so only the factors of the changed
+	 * boundaries that are still part of the state need to be generated.
+	 */
+	@Override
+	public List<SingleVariablePattern<BoundaryVariable>> generateFactorPatterns(TokenState state,
+			Collection<AbstractVariable> changedVariables) {
+		List<SingleVariablePattern<BoundaryVariable>> factors = new ArrayList<>();
+		for (AbstractVariable v : changedVariables) {
+			BoundaryVariable b = (BoundaryVariable) v;
+			if (state.tokenization.tokenBoundaries.get(b.boundaryPosition) == b) {
+				factors.add(new SingleVariablePattern<>(this, b));
+			}
+		}
+		return factors;
+	}
+
 	@Override
-	public void computeFactor(Sentence instance, Factor<SingleVariablePattern<BoundaryVariable>> factor) {
-		Vector features = factor.getFeatureVector();
+	public void computeFactor(Sentence instance, Factor<SingleVariablePattern<BoundaryVariable>> factor,
+			FeatureEmitter features) {
 		int position = factor.getFactorPattern().getVariable().boundaryPosition;
 		int from = Math.max(position - windowSize / 2, 0);
 		int to = Math.min(position + (windowSize + 1) / 2, instance.text.length());
 
-		String window = instance.text.substring(from, to);
-
-		for (int i = 0; i < window.length(); i++) {
-			char c = window.charAt(i);
+		for (int i = 0; i < to - from; i++) {
+			char c = instance.text.charAt(from + i);
 			boolean isPunctuation = c == '.' || c == '!' || c == '?' || c == ',';
 			boolean isWhitespace = c == ' ' || c == '\t' || c == '\n';
 			boolean isHyphen = c == '-';
@@ -53,14 +79,14 @@ public class TokenizationTemplate
 			boolean isUpper = Character.isUpperCase(c);
 
 			int relativePosition = from - position + i;
-			features.set("CHAR@" + relativePosition + "_IS_PUNCTUATION", isPunctuation);
-			features.set("CHAR@" + relativePosition + "_IS_WHITESPACE", isWhitespace);
-			features.set("CHAR@" + relativePosition + "_IS_HYPHEN", isHyphen);
-			features.set("CHAR@" + relativePosition + "_IS_DIGIT", isDigit);
-			features.set("CHAR@" + relativePosition + "_IS_LETTER", isLetter);
-			features.set("CHAR@" + relativePosition + "_IS_LOWER", isLower);
-			features.set("CHAR@" + relativePosition + "_IS_UPPER", isUpper);
-			features.set("CHAR@" + relativePosition + "_IS_OTHER",
+			features.emit(isPunctuationFeature, relativePosition, isPunctuation);
+			features.emit(isWhitespaceFeature, relativePosition, isWhitespace);
+			features.emit(isHyphenFeature, relativePosition, isHyphen);
+			features.emit(isDigitFeature, relativePosition, isDigit);
+			features.emit(isLetterFeature, relativePosition, isLetter);
+			features.emit(isLowerFeature, relativePosition, isLower);
+			features.emit(isUpperFeature, relativePosition, isUpper);
+			features.emit(isOtherFeature, relativePosition,
 					(!isPunctuation && !isWhitespace && !isHyphen && !isDigit && !isLetter && !isLower && !isUpper));
 
 			// features.set("CHAR@" + relativePosition + "=" + c, 1.0);
@@ -1,19 +1,22 @@
 package factors;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import learning.Vector;
 import templates.AbstractTemplate;
 import utility.FactorID;
+import utility.VariableID;
 import variables.AbstractState;
 
 /**
  * A factor is an object that connects a feature vector to the variables that
- * were involved computing this feature vector. Since the current system does
- * NOT use any caching of factors and features across states, it is not yet
- * necessary to implement the getVariableIDs() methods correctly. However, this
- * will change in the future. </br>
+ * were involved computing this feature vector. Factors are cached across
+ * states and sampling steps in the FactorPool. The variables of a factor are
+ * declared by its pattern (see <b>FactorPattern.getVariableIDs()</b>), so
+ * that only the factors that read a changed variable need to be recomputed.
+ * </br>
  * Since the generation of a factor and the actual computation of its features
  * is separated into to steps, you need to store/reference the variables you
  * need for the computation of the features inside this factor object (for
@@ -29,12 +32,27 @@ public class Factor<FactorPatternT extends FactorPattern> implements Serializabl
 	private final FactorPatternT factorPattern;
 	private final Vector features = new Vector();
 
+	/**
+	 * The dot product of the features of this factor with the weights of its
+	 * template and the version of the weights (see
+	 * AbstractTemplate.getWeightsVersion()) it was computed for.
+	 */
+	private static class CachedDotProduct {
+		private final long weightsVersion;
+		private final double dotProduct;
+
+		public CachedDotProduct(long weightsVersion, double dotProduct) {
+			this.weightsVersion = weightsVersion;
+			this.dotProduct = dotProduct;
+		}
+	}
+
+	private transient volatile CachedDotProduct cachedDotProduct;
+
 	/**
 	 * A factor is an object that connects a feature vector to the variables
-	 * that were involved computing this feature vector. Since the current
-	 * system does NOT use any caching of factors and features across states, it
-	 * is not yet necessary to implement the getVariableIDs() methods correctly.
-	 * However, this will change in the future. </br>
+	 * that were involved computing this feature vector (see
+	 * <b>getVariableIDs()</b>). </br>
 	 * Since the generation of a factor and the actual computation of its
 	 * features is separated into to steps, you need to store/reference the
 	 * variables you need for the computation of the features inside this factor
@@ -46,6 +64,9 @@ public class Factor<FactorPatternT extends FactorPattern> implements Serializabl
 	public Factor(FactorPatternT factorPattern) {
 		this.factorID = generateFactorID();
 		this.factorPattern = factorPattern;
+		if (factorPattern.getTemplate() != null) {
+			features.setFeatureHasher(factorPattern.getTemplate().getFeatureHasher());
+		}
 	}
 
 	public FactorID getID() {
@@ -56,6 +77,53 @@ public class Factor<FactorPatternT extends FactorPattern> implements Serializabl
 		return features;
 	}
 
+	/**
+	 * Returns the dot product of the features of this factor and the weights
+	 * of its template. The result is cached until the weights of the template
+	 * change, so that a factor that is shared by several states is only
+	 * computed once per weights version.
+	 * 
+	 * @return
+	 */
+	public double dotProduct() {
+		AbstractTemplate<?, ?, ?> template = getTemplate();
+		Vector weights = template.getWeights();
+		if (!weights.isSharedAcrossThreads()) {
+			return features.dotProduct(weights);
+		}
+		long weightsVersion = template.getWeightsVersion();
+		double dotProduct = getCachedDotProduct(weightsVersion);
+		if (Double.isNaN(dotProduct)) {
+			dotProduct = features.dotProduct(weights);
+			cacheDotProduct(weightsVersion, dotProduct);
+		}
+		return dotProduct;
+	}
+
+	/**
+	 * Returns the cached dot product of this factor for the given weights
+	 * version or NaN if none was cached.
+	 * 
+	 * @param weightsVersion
+	 * @return
+	 */
+	public double getCachedDotProduct(long weightsVersion) {
+		CachedDotProduct cached = cachedDotProduct;
+		return cached != null && cached.weightsVersion == weightsVersion ? cached.dotProduct : Double.NaN;
+	}
+
+	/**
+	 * Caches the dot product of this factor that was computed with the given
+	 * weights version. The version has to be retrieved before the dot
+	 * product is computed.
+	 * 
+	 * @param weightsVersion
+	 * @param dotProduct
+	 */
+	public void cacheDotProduct(long weightsVersion, double dotProduct) {
+		cachedDotProduct = new CachedDotProduct(weightsVersion, dotProduct);
+	}
+
 	private FactorID generateFactorID() {
 		int currentID = factorIDIndex.getAndIncrement();
 		String id = "F" + String.valueOf(currentID);
@@ -70,6 +138,16 @@ public class Factor<FactorPatternT extends FactorPattern> implements Serializabl
 		return factorPattern.getTemplate();
 	}
 
+	/**
+	 * Returns the IDs of the variables that were involved in computing this
+	 * factor or null if they are unknown (see FactorPattern.getVariableIDs()).
+	 * 
+	 * @return
+	 */
+	public Collection<VariableID> getVariableIDs() {
+		return factorPattern.getVariableIDs();
+	}
+
 	@Override
 	public String toString() {
 		return "Factor [factorID=" + factorID + ", factorPattern=" + factorPattern + ", features=" + features + "]";
@@ -1,9 +1,11 @@
 package factors;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 import exceptions.MissingFactorException;
 
@@ -15,33 +17,123 @@ public class FactorGraph implements Serializable {
 	 * need to recompute existing, previously computed factors.
 	 */
 	private FactorPool factorPool;
-	private Collection<FactorPattern> factorPatterns;
+
+	/**
+	 * The patterns that were added with one call of
+	 * <b>addFactorPatterns()</b>, linked to the previously added chunk.
+	 */
+	private static final class PatternChunk implements Serializable {
+		private final FactorPattern[] factorPatterns;
+		private final PatternChunk previous;
+		private final int totalSize;
+		/**
+		 * The patterns of this and all previous chunks, created on demand.
+		 */
+		private transient volatile List<FactorPattern> flattened;
+
+		public PatternChunk(FactorPattern[] factorPatterns, PatternChunk previous) {
+			this.factorPatterns = factorPatterns;
+			this.previous = previous;
+			this.totalSize = factorPatterns.length + (previous != null ? previous.totalSize : 0);
+		}
+	}
+
+	/**
+	 * The patterns of this factor graph as a lock-free stack of arrays, so
+	 * that templates that are applied in parallel can add their patterns
+	 * without contention.
+	 */
+	private final AtomicReference<PatternChunk> patternChunks = new AtomicReference<>();
+	/**
+	 * The factor graph of the state from which this state was derived. Used
+	 * for delta scoring and released as soon as this factor graph was scored.
+	 */
+	private transient FactorGraph parent;
+	/**
+	 * The sum of the factor scores of this factor graph (see
+	 * AbstractAdditiveScorer) from the last time it was scored.
+	 */
+	private double rawScore = Double.NaN;
+	/**
+	 * True if all templates of the model were applied to this factor graph
+	 * since it was cleared the last time.
+	 */
+	private transient volatile boolean complete;
 
 	public FactorGraph() {
 		this.factorPool = new FactorPool();
-		// TODO This should be thread safe. Is it in our case?
-		this.factorPatterns = new ConcurrentLinkedQueue<>();
 	}
 
 	public FactorGraph(FactorGraph factorGraph) {
 		this.factorPool = factorGraph.factorPool;
-		this.factorPatterns = new ConcurrentLinkedQueue<>();
+		this.parent = factorGraph;
 	}
 
+	/**
+	 * Adds the given patterns to this factor graph. This method is thread
+	 * safe and lock-free.
+	 * 
+	 * @param generatedFactorPatterns
+	 */
 	public void addFactorPatterns(List<? extends FactorPattern> generatedFactorPatterns) {
-		this.factorPatterns.addAll(generatedFactorPatterns);
+		if (generatedFactorPatterns.isEmpty()) {
+			return;
+		}
+		FactorPattern[] factorPatterns = generatedFactorPatterns
+				.toArray(new FactorPattern[generatedFactorPatterns.size()]);
+		PatternChunk previous;
+		do {
+			previous = patternChunks.get();
+		} while (!patternChunks.compareAndSet(previous, new PatternChunk(factorPatterns, previous)));
 	}
 
 	public void clear() {
-		this.factorPatterns.clear();
-		this.factorPatterns = new ConcurrentLinkedQueue<>();
+		patternChunks.set(null);
+		complete = false;
+	}
+
+	/**
+	 * Returns true if this factor graph contains the patterns of all templates
+	 * of the model, i.e. if the model was applied to it after it was cleared
+	 * the last time. Only the patterns of complete factor graphs are reused
+	 * for the states that are derived from them.
+	 * 
+	 * @return
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
 	}
 
 	public List<Factor<? extends FactorPattern>> getFactors() throws MissingFactorException {
-		return factorPool.getFactors(factorPatterns);
+		return factorPool.getFactors(getFactorPatterns());
 	}
 
+	/**
+	 * Returns all patterns of this factor graph in the order in which they
+	 * were added. The returned collection is a snapshot that is not updated
+	 * if patterns are added later.
+	 * 
+	 * @return
+	 */
 	public Collection<FactorPattern> getFactorPatterns() {
+		PatternChunk chunk = patternChunks.get();
+		if (chunk == null) {
+			return Collections.emptyList();
+		}
+		List<FactorPattern> factorPatterns = chunk.flattened;
+		if (factorPatterns == null) {
+			FactorPattern[] flattened = new FactorPattern[chunk.totalSize];
+			for (PatternChunk c = chunk; c != null; c = c.previous) {
+				System.arraycopy(c.factorPatterns, 0, flattened, c.totalSize - c.factorPatterns.length,
+						c.factorPatterns.length);
+			}
+			factorPatterns = Collections.unmodifiableList(Arrays.asList(flattened));
+			chunk.flattened = factorPatterns;
+		}
 		return factorPatterns;
 	}
 
@@ -49,4 +141,38 @@ public class FactorGraph implements Serializable {
 		return factorPool;
 	}
 
+	/**
+	 * Replaces the factor pool of this factor graph, e.g. by a view on a pool
+	 * that is shared across instances (see FactorPool.forInstance()). States
+	 * that are derived from this state use the same pool.
+	 * 
+	 * @param factorPool
+	 */
+	public void setFactorPool(FactorPool factorPool) {
+		this.factorPool = factorPool;
+	}
+
+	/**
+	 * Returns the factor graph of the state from which this state was derived
+	 * or null if there is no such state or if this factor graph was already
+	 * scored.
+	 * 
+	 * @return
+	 */
+	public FactorGraph getParent() {
+		return parent;
+	}
+
+	public void detachFromParent() {
+		this.parent = null;
+	}
+
+	public double getRawScore() {
+		return rawScore;
+	}
+
+	public void setRawScore(double rawScore) {
+		this.rawScore = rawScore;
+	}
+
 }
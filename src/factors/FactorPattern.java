@@ -1,10 +1,17 @@
 package factors;
 
+import java.util.Collection;
+
 import templates.AbstractTemplate;
+import utility.VariableID;
 
 /**
  * Store the variables and their roles for this factor. It is essential that the
- * equals() and hashCode() are implemented correctly.
+ * equals() and hashCode() are implemented correctly. </br>
+ * When a pattern is added to a state by the Model, it is interned in the
+ * factor pool (see <b>FactorPool.intern()</b>): equal patterns are replaced by
+ * a single canonical instance with an int id, so that the pool can look up
+ * factors by their id instead of hashing and comparing patterns.
  * 
  * @author sjebbara
  *
@@ -12,6 +19,13 @@ import templates.AbstractTemplate;
 public abstract class FactorPattern {
 	protected final AbstractTemplate<?, ?, ?> template;
 
+	/**
+	 * The intern table of the factor pool that assigned the id of this pattern
+	 * or null if this pattern was not interned.
+	 */
+	transient volatile Object internTable;
+	transient int internedID = -1;
+
 	public FactorPattern(AbstractTemplate<?, ?, ?> template) {
 		this.template = template;
 	}
@@ -20,6 +34,31 @@ public abstract class FactorPattern {
 		return template;
 	}
 
+	/**
+	 * Returns the id that was assigned to this pattern when it was interned in
+	 * a factor pool or -1 if it was not interned.
+	 * 
+	 * @return
+	 */
+	public int getInternedID() {
+		return internTable != null ? internedID : -1;
+	}
+
+	/**
+	 * Returns the IDs of all variables that this pattern reads, i.e. the
+	 * variables on which the features of its factor depend, or null if they
+	 * are unknown. The Model and the FactorPool use the IDs to find the
+	 * factors that are affected by a change of a variable (see
+	 * <b>AbstractState.markAsChanged()</b>). Since equal patterns share a
+	 * single canonical instance, equal variables should have equal IDs.
+	 * Patterns that return null are always regenerated.
+	 * 
+	 * @return
+	 */
+	public Collection<VariableID> getVariableIDs() {
+		return null;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -2,34 +2,326 @@ package factors;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import corpus.Instance;
 import exceptions.MissingFactorException;
+import templates.AbstractTemplate;
+import utility.VariableID;
 
+/**
+ * Stores computed factors w.r.t. their patterns. By default, a factor pool is
+ * unbounded and lives as long as the sampling chain of one instance. </br>
+ * A pool can be created with a capacity (see <b>FactorPool(capacity,
+ * eviction)</b>). Such a pool evicts the least recently used factors in
+ * <b>cleanUp()</b> (which is called by the samplers at the end of each
+ * sampling step, see <b>Model.cleanUpFactorPool()</b>) until it fits into its
+ * capacity again. Factors are never evicted while a step is in progress, i.e.
+ * before the learner used the factors of the scored states. </br>
+ * A bounded pool can be shared across instances and epochs with
+ * <b>forInstance()</b>, which returns a view on the same storage whose
+ * factors are kept apart from the factors of all other instances. Views
+ * recompute a factor that was evicted by a concurrent chain on demand. </br>
+ * Factor patterns are interned in the pool (see <b>intern()</b>), so that
+ * factors are stored and looked up by the int id of their canonical pattern.
+ * </br>
+ * The pool indexes its factors by the IDs of the variables that their
+ * patterns read (see FactorPattern.getVariableIDs()), so that the factors that
+ * are affected by a change of some variables can be removed with
+ * <b>invalidate()</b> instead of clearing the whole pool.
+ */
 public class FactorPool {
 
 	private static Logger log = LogManager.getFormatterLogger();
-	private Map<FactorPattern, Factor<? extends FactorPattern>> factorPattern2Factor;
 
+	/**
+	 * Defines in which unit the capacity of a factor pool is measured.
+	 */
+	public enum Eviction {
+		/**
+		 * The capacity is the maximum number of factors.
+		 */
+		LRU,
+		/**
+		 * The capacity is the maximum total number of features of all factors,
+		 * so that factors with many features are evicted earlier.
+		 */
+		FEATURE_COUNT
+	}
+
+	private static class CachedFactor {
+		/**
+		 * The key of the canonical pattern of the factor in the intern table.
+		 */
+		private final Object key;
+		private final Factor<? extends FactorPattern> factor;
+		private final long weight;
+		private volatile long lastAccess;
+
+		public CachedFactor(Object key, Factor<? extends FactorPattern> factor, long weight, long lastAccess) {
+			this.key = key;
+			this.factor = factor;
+			this.weight = weight;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	/**
+	 * The key of a factor in a pool that is shared across instances.
+	 */
+	private static class ScopedPattern {
+		private final Instance instance;
+		private final FactorPattern factorPattern;
+
+		public ScopedPattern(Instance instance, FactorPattern factorPattern) {
+			this.instance = instance;
+			this.factorPattern = factorPattern;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(instance) + factorPattern.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ScopedPattern))
+				return false;
+			ScopedPattern other = (ScopedPattern) obj;
+			return instance == other.instance && factorPattern.equals(other.factorPattern);
+		}
+	}
+
+	/**
+	 * Maps the keys of factor patterns to their canonical instances. Each
+	 * canonical pattern references this table and carries a unique id.
+	 */
+	private static class InternTable {
+		private final Map<Object, FactorPattern> canonicalPatterns = new ConcurrentHashMap<>();
+		private final AtomicInteger nextID = new AtomicInteger();
+	}
+
+	/**
+	 * The storage and statistics that are shared by a pool and all its views.
+	 */
+	private static class Storage {
+		/**
+		 * The factors by the interned ids of their patterns.
+		 */
+		private final Map<Integer, CachedFactor> factors = new ConcurrentHashMap<>();
+		/**
+		 * The ids of the factors by the IDs of the variables that their
+		 * patterns read. Patterns with unknown variables are not indexed.
+		 */
+		private final Map<VariableID, Set<Integer>> factorsByVariable = new ConcurrentHashMap<>();
+		private volatile InternTable internTable = new InternTable();
+		private final long capacity;
+		private final Eviction eviction;
+		private final AtomicLong weight = new AtomicLong();
+		private final AtomicLong clock = new AtomicLong();
+		private final LongAdder hits = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private final LongAdder evictions = new LongAdder();
+
+		public Storage(long capacity, Eviction eviction) {
+			this.capacity = capacity;
+			this.eviction = eviction;
+		}
+
+		private long weigh(Factor<?> factor) {
+			if (eviction == Eviction.FEATURE_COUNT) {
+				return Math.max(1, factor.getFeatureVector().size());
+			}
+			return 1;
+		}
+
+		private void put(int id, Object key, Factor<? extends FactorPattern> factor) {
+			CachedFactor cachedFactor = new CachedFactor(key, factor, weigh(factor), clock.incrementAndGet());
+			CachedFactor previous = factors.put(id, cachedFactor);
+			weight.addAndGet(cachedFactor.weight - (previous != null ? previous.weight : 0));
+			Collection<VariableID> variableIDs = factor.getVariableIDs();
+			if (variableIDs != null) {
+				for (VariableID variableID : variableIDs) {
+					factorsByVariable.compute(variableID, (k, ids) -> {
+						if (ids == null) {
+							ids = ConcurrentHashMap.newKeySet();
+						}
+						ids.add(id);
+						return ids;
+					});
+				}
+			}
+		}
+
+		/**
+		 * Removes the given factor and releases the canonical instance of its
+		 * pattern, so that the intern table does not grow beyond the pool.
+		 */
+		private void remove(int id, CachedFactor cachedFactor) {
+			if (factors.remove(id, cachedFactor)) {
+				weight.addAndGet(-cachedFactor.weight);
+				FactorPattern factorPattern = cachedFactor.factor.getFactorPattern();
+				internTable.canonicalPatterns.computeIfPresent(cachedFactor.key,
+						(key, canonical) -> canonical == factorPattern ? null : canonical);
+				Collection<VariableID> variableIDs = factorPattern.getVariableIDs();
+				if (variableIDs != null) {
+					for (VariableID variableID : variableIDs) {
+						factorsByVariable.computeIfPresent(variableID, (k, ids) -> {
+							ids.remove(id);
+							return ids.isEmpty() ? null : ids;
+						});
+					}
+				}
+			}
+		}
+	}
+
+	private final Storage storage;
+	/**
+	 * The instance to which the factors of this view belong or null if this
+	 * pool is not shared across instances.
+	 */
+	private final Instance instance;
+
+	/**
+	 * Creates an unbounded factor pool.
+	 */
 	public FactorPool() {
-		factorPattern2Factor = new ConcurrentHashMap<>();
+		this(Long.MAX_VALUE, Eviction.LRU);
 	}
 
-	public <FactorPatternT extends FactorPattern> Set<FactorPatternT> extractNewFactorPatterns(
-			Set<FactorPatternT> generatedFactors) {
+	/**
+	 * Creates a factor pool that holds at most <i>capacity</i> factors (or
+	 * features, depending on the <i>eviction</i>) after each call of
+	 * <b>cleanUp()</b>.
+	 *
+	 * @param capacity
+	 * @param eviction
+	 */
+	public FactorPool(long capacity, Eviction eviction) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity of a factor pool must be positive.");
+		}
+		this.storage = new Storage(capacity, eviction);
+		this.instance = null;
+	}
+
+	private FactorPool(Storage storage, Instance instance) {
+		this.storage = storage;
+		this.instance = instance;
+	}
 
-		Set<FactorPattern> patternsFromMap = this.factorPattern2Factor.keySet();
-		Set<FactorPatternT> newFactors = new HashSet<>(generatedFactors);
-		newFactors.removeAll(patternsFromMap);
+	/**
+	 * Returns a view on this pool for the factors of the given instance. All
+	 * views of a pool share its capacity and statistics. Factor patterns of
+	 * different instances never collide, even if they are equal. Thus, a
+	 * shared pool can be used across epochs, e.g. with
+	 * <b>Trainer.setSharedFactorPool()</b>, as long as the features of a
+	 * factor depend only on its pattern and the instance.
+	 *
+	 * @param instance
+	 * @return
+	 */
+	public FactorPool forInstance(Instance instance) {
+		return new FactorPool(storage, instance);
+	}
 
+	private Object key(FactorPattern factorPattern) {
+		return instance == null ? factorPattern : new ScopedPattern(instance, factorPattern);
+	}
+
+	private boolean belongsToThisPool(Object key) {
+		return instance == null ? !(key instanceof ScopedPattern) : key instanceof ScopedPattern
+				&& ((ScopedPattern) key).instance == instance;
+	}
+
+	/**
+	 * Returns the canonical instance of the given factor pattern in this pool:
+	 * the first interned pattern that is equal to the given one (w.r.t. the
+	 * instance of this view). A pattern that is interned for the first time
+	 * becomes canonical and is assigned a new id (see
+	 * FactorPattern.getInternedID()). Patterns that were already interned in
+	 * this pool are returned without hashing them. Since all factors are
+	 * stored by the ids of their canonical patterns, states should only
+	 * contain interned patterns.
+	 * 
+	 * @param factorPattern
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <FactorPatternT extends FactorPattern> FactorPatternT intern(FactorPatternT factorPattern) {
+		InternTable table = storage.internTable;
+		if (factorPattern.internTable == table) {
+			return factorPattern;
+		}
+		Object key = key(factorPattern);
+		FactorPattern canonical = table.canonicalPatterns.get(key);
+		if (canonical == null) {
+			canonical = table.canonicalPatterns.computeIfAbsent(key, k -> {
+				factorPattern.internedID = table.nextID.getAndIncrement();
+				factorPattern.internTable = table;
+				return factorPattern;
+			});
+		}
+		return (FactorPatternT) canonical;
+	}
+
+	/**
+	 * Returns the cached factor of the given pattern or null if there is none.
+	 */
+	private CachedFactor lookUp(FactorPattern factorPattern) {
+		InternTable table = storage.internTable;
+		if (factorPattern.internTable == table) {
+			CachedFactor cachedFactor = storage.factors.get(factorPattern.internedID);
+			if (cachedFactor != null) {
+				return cachedFactor;
+			}
+		}
+		/*
+		 * The pattern was not interned or its factor was evicted or stored for
+		 * another instance of an equal pattern.
+		 */
+		FactorPattern canonical = table.canonicalPatterns.get(key(factorPattern));
+		if (canonical != null && canonical != factorPattern && canonical.internTable == table) {
+			return storage.factors.get(canonical.internedID);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all of the given (interned and distinct) factor patterns for
+	 * which this pool does not contain a factor yet.
+	 * 
+	 * @param generatedFactors
+	 * @return
+	 */
+	public <FactorPatternT extends FactorPattern> List<FactorPatternT> extractNewFactorPatterns(
+			Collection<FactorPatternT> generatedFactors) {
+		List<FactorPatternT> newFactors = new ArrayList<>();
+		long now = storage.clock.get();
+		for (FactorPatternT factorPattern : generatedFactors) {
+			CachedFactor cachedFactor = lookUp(factorPattern);
+			if (cachedFactor != null) {
+				cachedFactor.lastAccess = now;
+			} else {
+				newFactors.add(factorPattern);
+			}
+		}
+		storage.hits.add(generatedFactors.size() - newFactors.size());
+		storage.misses.add(newFactors.size());
 		return newFactors;
 	}
 
@@ -41,42 +333,208 @@ public class FactorPool {
 		List<Factor<? extends FactorPattern>> factors = new ArrayList<>();
 
 		for (FactorPattern factorPattern : factorPatterns) {
-			if (factorPattern2Factor.containsKey(factorPattern)) {
-				Factor<? extends FactorPattern> factor = factorPattern2Factor.get(factorPattern);
-				factors.add(factor);
-			} else {
-				log.error("Could not retrieve factor for requested factor pattern: %s", factorPattern);
-				log.error("Make sure \"sequentialScoring\" is set to FALSE in the model when training.");
-				throw new MissingFactorException(
-						String.format("Could not retrieve factor for requested factor pattern: %s", factorPattern));
-			}
+			factors.add(getFactor(factorPattern));
 		}
 		return factors;
 	}
 
-	public <FactorPatternT extends FactorPattern> void addFactors(Set<Factor<FactorPatternT>> newFactors) {
+	public Factor<? extends FactorPattern> getFactor(FactorPattern factorPattern) throws MissingFactorException {
+		CachedFactor cachedFactor = lookUp(factorPattern);
+		if (cachedFactor != null) {
+			return cachedFactor.factor;
+		}
+		if (instance != null) {
+			return recomputeFactor(factorPattern);
+		}
+		log.error("Could not retrieve factor for requested factor pattern: %s", factorPattern);
+		log.error("Make sure \"sequentialScoring\" is set to FALSE in the model when training.");
+		throw new MissingFactorException(
+				String.format("Could not retrieve factor for requested factor pattern: %s", factorPattern));
+	}
+
+	/**
+	 * Computes a factor of a shared pool that was evicted by another chain
+	 * since it was added.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Factor<? extends FactorPattern> recomputeFactor(FactorPattern factorPattern) {
+		log.debug("Recompute evicted factor for pattern %s", factorPattern);
+		Factor factor = new Factor<>(factorPattern);
+		((AbstractTemplate) factorPattern.getTemplate()).computeFactor(instance, factor);
+		storage.misses.increment();
+		put(factor);
+		return factor;
+	}
+
+	private void put(Factor<? extends FactorPattern> factor) {
+		FactorPattern canonical = intern(factor.getFactorPattern());
+		storage.put(canonical.internedID, key(canonical), factor);
+	}
+
+	public <FactorPatternT extends FactorPattern> void addFactors(Collection<Factor<FactorPatternT>> newFactors) {
 		for (Factor<FactorPatternT> factor : newFactors) {
-			this.factorPattern2Factor.put(factor.getFactorPattern(), factor);
+			put(factor);
 		}
 	}
 
 	public Collection<Factor<? extends FactorPattern>> getAllFactors() {
-		return factorPattern2Factor.values();
+		List<Factor<? extends FactorPattern>> factors = new ArrayList<>();
+		for (CachedFactor cachedFactor : storage.factors.values()) {
+			if (belongsToThisPool(cachedFactor.key)) {
+				factors.add(cachedFactor.factor);
+			}
+		}
+		return factors;
+	}
+
+	/**
+	 * Removes all factors (of this view) whose patterns read at least one of
+	 * the given variables, so that they are recomputed when they are requested
+	 * the next time. In contrast to <b>clear()</b> (or
+	 * <b>Model.setForceFactorComputation()</b>), all other factors are kept.
+	 * This is necessary if variables are modified in place, i.e. if a changed
+	 * variable keeps its ID and the patterns that read it stay equal. Note that
+	 * only the variables of the canonical patterns are indexed.
+	 *
+	 * @param variableIDs
+	 * @return the number of removed factors
+	 */
+	public int invalidate(Collection<VariableID> variableIDs) {
+		int invalidated = 0;
+		for (VariableID variableID : variableIDs) {
+			Set<Integer> ids = storage.factorsByVariable.get(variableID);
+			if (ids == null) {
+				continue;
+			}
+			for (Integer id : new ArrayList<>(ids)) {
+				CachedFactor cachedFactor = storage.factors.get(id);
+				if (cachedFactor != null && belongsToThisPool(cachedFactor.key)) {
+					storage.remove(id, cachedFactor);
+					invalidated++;
+				}
+			}
+		}
+		log.debug("Invalidated %s factors of %s variables.", invalidated, variableIDs.size());
+		return invalidated;
+	}
+
+	/**
+	 * Evicts the least recently used factors (of all instances, if this pool
+	 * is shared) if the pool exceeds its capacity. To avoid an eviction after
+	 * every step, the pool is shrunk to 90% of its capacity. This method must
+	 * not be called while the factors of the current sampling step are
+	 * computed, scored or used by the learner.
+	 *
+	 * @return the number of evicted factors
+	 */
+	public int cleanUp() {
+		if (storage.weight.get() <= storage.capacity) {
+			return 0;
+		}
+		synchronized (storage) {
+			long targetWeight = storage.capacity - storage.capacity / 10;
+			List<Entry<Integer, CachedFactor>> entries = new ArrayList<>(storage.factors.entrySet());
+			entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+			int evicted = 0;
+			for (Entry<Integer, CachedFactor> e : entries) {
+				if (storage.weight.get() <= targetWeight) {
+					break;
+				}
+				storage.remove(e.getKey(), e.getValue());
+				evicted++;
+			}
+			storage.evictions.add(evicted);
+			log.debug("Evicted %s factors from the factor pool.", evicted);
+			return evicted;
+		}
+	}
+
+	/**
+	 * Returns the number of factors in this pool (of all instances, if this
+	 * pool is shared).
+	 *
+	 * @return
+	 */
+	public int size() {
+		return storage.factors.size();
+	}
+
+	/**
+	 * Returns the current weight of this pool, i.e. the number of factors or
+	 * their total number of features (see Eviction).
+	 *
+	 * @return
+	 */
+	public long getWeight() {
+		return storage.weight.get();
+	}
+
+	public long getCapacity() {
+		return storage.capacity;
+	}
+
+	public Eviction getEviction() {
+		return storage.eviction;
+	}
+
+	/**
+	 * Returns the number of generated factor patterns for which a factor was
+	 * already in the pool.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return storage.hits.sum();
+	}
+
+	/**
+	 * Returns the number of generated factor patterns for which a factor had
+	 * to be computed.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return storage.misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return storage.evictions.sum();
+	}
+
+	public double getHitRate() {
+		long hits = getHitCount();
+		long requests = hits + getMissCount();
+		return requests == 0 ? 1 : (double) hits / requests;
 	}
 
 	@Override
 	public String toString() {
-		StringBuilder builder = new StringBuilder("FactorPool [#Factors: " + factorPattern2Factor.size() + "]");
-		for (Entry<FactorPattern, Factor<?>> e : factorPattern2Factor.entrySet()) {
-			builder.append(e.getKey() + " -> " + e.getValue().getID());
+		StringBuilder builder = new StringBuilder("FactorPool [#Factors: " + size() + ", Hits: " + getHitCount()
+				+ ", Misses: " + getMissCount() + ", Evictions: " + getEvictionCount() + "]");
+		for (CachedFactor cachedFactor : storage.factors.values()) {
+			builder.append(cachedFactor.key + " -> " + cachedFactor.factor.getID());
 			builder.append("\n");
 		}
 		return builder.toString();
 	}
 
+	/**
+	 * Removes all factors from this pool. If this pool is a view on a shared
+	 * pool, only the factors of its instance are removed.
+	 */
 	public void clear() {
-		factorPattern2Factor.clear();
-		factorPattern2Factor = new ConcurrentHashMap<>();
+		if (instance == null) {
+			storage.factors.clear();
+			storage.factorsByVariable.clear();
+			storage.internTable = new InternTable();
+			storage.weight.set(0);
+		} else {
+			for (Entry<Integer, CachedFactor> e : storage.factors.entrySet()) {
+				if (belongsToThisPool(e.getValue().key)) {
+					storage.remove(e.getKey(), e.getValue());
+				}
+			}
+		}
 	}
 
 }
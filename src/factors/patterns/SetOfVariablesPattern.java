@@ -1,13 +1,27 @@
 package factors.patterns;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import factors.FactorPattern;
 import templates.AbstractTemplate;
+import utility.VariableID;
 import variables.AbstractVariable;
 
 public class SetOfVariablesPattern<VariableT extends AbstractVariable> extends FactorPattern {
+	/**
+	 * The variables of this pattern. The set must not be modified after the
+	 * pattern was added to a state, since the hash code of the pattern is
+	 * cached.
+	 */
 	public Set<VariableT> variables;
+	/**
+	 * The cached hash code of this pattern or 0 if it was not computed yet.
+	 */
+	private transient int hash;
 
 	public SetOfVariablesPattern(AbstractTemplate<?, ?, SetOfVariablesPattern<VariableT>> template,
 			Set<VariableT> variables) {
@@ -15,11 +29,27 @@ public class SetOfVariablesPattern<VariableT extends AbstractVariable> extends F
 		this.variables = variables;
 	}
 
+	@Override
+	public Collection<VariableID> getVariableIDs() {
+		if (variables == null) {
+			return Collections.emptyList();
+		}
+		List<VariableID> variableIDs = new ArrayList<>(variables.size());
+		for (VariableT variable : variables) {
+			variableIDs.add(variable.getID());
+		}
+		return variableIDs;
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = super.hashCode();
-		result = prime * result + ((variables == null) ? 0 : variables.hashCode());
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = super.hashCode();
+			result = prime * result + ((variables == null) ? 0 : variables.hashCode());
+			hash = result;
+		}
 		return result;
 	}
 
@@ -32,6 +62,8 @@ public class SetOfVariablesPattern<VariableT extends AbstractVariable> extends F
 		if (getClass() != obj.getClass())
 			return false;
 		SetOfVariablesPattern other = (SetOfVariablesPattern) obj;
+		if (hashCode() != other.hashCode())
+			return false;
 		if (variables == null) {
 			if (other.variables != null)
 				return false;
@@ -1,12 +1,20 @@
 package factors.patterns;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import factors.FactorPattern;
 import templates.AbstractTemplate;
+import utility.VariableID;
 import variables.AbstractVariable;
 
 public class SingleVariablePattern<VariableT extends AbstractVariable> extends FactorPattern {
 
 	private VariableT variable;
+	/**
+	 * The cached hash code of this pattern or 0 if it was not computed yet.
+	 */
+	private transient int hash;
 
 	public SingleVariablePattern(AbstractTemplate<?, ?, SingleVariablePattern<VariableT>> template,
 			VariableT variable) {
@@ -18,11 +26,20 @@ public class SingleVariablePattern<VariableT extends AbstractVariable> extends F
 		return variable;
 	}
 
+	@Override
+	public Collection<VariableID> getVariableIDs() {
+		return variable == null ? Collections.emptyList() : Collections.singletonList(variable.getID());
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = super.hashCode();
-		result = prime * result + ((variable == null) ? 0 : variable.hashCode());
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = super.hashCode();
+			result = prime * result + ((variable == null) ? 0 : variable.hashCode());
+			hash = result;
+		}
 		return result;
 	}
 
@@ -35,6 +52,8 @@ public class SingleVariablePattern<VariableT extends AbstractVariable> extends F
 		if (getClass() != obj.getClass())
 			return false;
 		SingleVariablePattern other = (SingleVariablePattern) obj;
+		if (hashCode() != other.hashCode())
+			return false;
 		if (variable == null) {
 			if (other.variable != null)
 				return false;
@@ -1,13 +1,22 @@
 package factors.patterns;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import factors.FactorPattern;
 import templates.AbstractTemplate;
+import utility.VariableID;
 import variables.AbstractVariable;
 
 public class VariablePairPattern<VariableT extends AbstractVariable> extends FactorPattern {
 
 	private VariableT variable1;
 	private VariableT variable2;
+	/**
+	 * The cached hash code of this pattern or 0 if it was not computed yet.
+	 */
+	private transient int hash;
 
 	public VariablePairPattern(AbstractTemplate<?, ?, VariablePairPattern<VariableT>> template, VariableT variable1,
 			VariableT variable2) {
@@ -24,12 +33,28 @@ public class VariablePairPattern<VariableT extends AbstractVariable> extends Fac
 		return variable2;
 	}
 
+	@Override
+	public Collection<VariableID> getVariableIDs() {
+		List<VariableID> variableIDs = new ArrayList<>(2);
+		if (variable1 != null) {
+			variableIDs.add(variable1.getID());
+		}
+		if (variable2 != null) {
+			variableIDs.add(variable2.getID());
+		}
+		return variableIDs;
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = super.hashCode();
-		result = prime * result + ((variable1 == null) ? 0 : variable1.hashCode());
-		result = prime * result + ((variable2 == null) ? 0 : variable2.hashCode());
+		int result = hash;
+		if (result == 0) {
+			final int prime = 31;
+			result = super.hashCode();
+			result = prime * result + ((variable1 == null) ? 0 : variable1.hashCode());
+			result = prime * result + ((variable2 == null) ? 0 : variable2.hashCode());
+			hash = result;
+		}
 		return result;
 	}
 
@@ -42,6 +67,8 @@ public class VariablePairPattern<VariableT extends AbstractVariable> extends Fac
 		if (getClass() != obj.getClass())
 			return false;
 		VariablePairPattern other = (VariablePairPattern) obj;
+		if (hashCode() != other.hashCode())
+			return false;
 		if (variable1 == null) {
 			if (other.variable1 != null)
 				return false;
@@ -10,6 +10,8 @@ import org.apache.logging.log4j.Logger;
 
 import learning.optimizer.Optimizer;
 import learning.regularizer.Regularizer;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import templates.AbstractTemplate;
 import utility.VectorUtil;
 import variables.AbstractState;
@@ -27,6 +29,8 @@ public class AdvancedLearner<StateT extends AbstractState<?>> implements Learner
 	private Optimizer optimizer;
 	private Regularizer regularizer;
 
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+
 	/**
 	 * This implementation of the learner implements the SampleRank learning
 	 * scheme. Very generally speaking, given a pair of states, the learner
@@ -73,6 +77,8 @@ public class AdvancedLearner<StateT extends AbstractState<?>> implements Learner
 	@Override
 	public void update(final StateT currentState, List<StateT> possibleNextStates) {
 		// System.out.println("##########################");
+		Timer updateTimer = metrics.timer("learner.update");
+		long start = updateTimer.start();
 		Map<AbstractTemplate<?, StateT, ?>, Vector> batchGradients = new HashMap<>();
 		for (AbstractTemplate<?, StateT, ?> t : model.getTemplates()) {
 			batchGradients.put(t, new Vector());
@@ -85,6 +91,7 @@ public class AdvancedLearner<StateT extends AbstractState<?>> implements Learner
 
 		applyWeightUpdate(batchGradients);
 		updates++;
+		updateTimer.stop(start);
 		// try {
 		// Thread.sleep(200);
 		// } catch (InterruptedException e) {
@@ -214,11 +221,16 @@ public class AdvancedLearner<StateT extends AbstractState<?>> implements Learner
 			log.trace("Template: %s", t.getClass().getSimpleName());
 			Vector templateGradients = batchGradients.get(t);
 			// System.out.println("GRAD: " + templateGradients);
-			Vector oldWeights = t.getWeights();
-			// System.out.println("OLD: " + oldWeights);
-			Vector newWeights = optimizer.getUpdates(oldWeights, templateGradients);
-			// System.out.println("NEW: " + newWeights);
-			t.setWeights(newWeights);
+			t.lockWeights();
+			try {
+				Vector oldWeights = t.getWeights();
+				// System.out.println("OLD: " + oldWeights);
+				Vector newWeights = optimizer.getUpdates(oldWeights, templateGradients);
+				// System.out.println("NEW: " + newWeights);
+				t.setWeights(newWeights);
+			} finally {
+				t.unlockWeights();
+			}
 		}
 	}
 
@@ -239,6 +251,21 @@ public class AdvancedLearner<StateT extends AbstractState<?>> implements Learner
 		return O1 > O2;
 	}
 
+	@Override
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the registry in which the metrics of this learner are recorded. By
+	 * default, the shared registry MetricsRegistry.getDefault() is used.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
 	public Model<?, StateT> getModel() {
 		return model;
 	}
@@ -0,0 +1,227 @@
+package learning;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the weights of a template in a compact binary format. A
+ * file consists of a fixed size header and a body: </br>
+ * <b>Header</b>: magic number (int), format version (int), number of features
+ * <i>n</i> (int), length of the body in bytes (long) and the CRC32 checksum of
+ * the body (long). </br>
+ * <b>Body</b>: the <i>n</i> weights as doubles, followed by the string table
+ * of the <i>n</i> feature names, each given as its length in bytes (int) and
+ * its UTF-8 encoding. The i-th weight belongs to the i-th feature name. </br>
+ * All numbers are stored in big-endian byte order. Files are read via memory
+ * mapping, so that the weights are decoded directly from the page cache
+ * without parsing text or copying the file into the heap.
+ */
+public class BinaryWeightsFormat {
+
+	public static final int MAGIC_NUMBER = 0x42495257;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 3 * Integer.BYTES + 2 * Long.BYTES;
+	/**
+	 * The maximum size of a mapped region of the file. Larger files are
+	 * mapped in several windows.
+	 */
+	private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+	private BinaryWeightsFormat() {
+	}
+
+	/**
+	 * Writes all non-zero weights of the given vector to the given file.
+	 *
+	 * @param weights
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(Vector weights, File file) throws IOException {
+		FeatureDictionary dictionary = FeatureDictionary.getInstance();
+		int n = weights.size();
+		int[] features = new int[n];
+		double[] values = new double[n];
+		int[] count = new int[1];
+		weights.forEachFeature((feature, value) -> {
+			if (count[0] < n) {
+				features[count[0]] = feature;
+				values[count[0]] = value;
+			}
+			count[0]++;
+		});
+		if (count[0] != n) {
+			throw new IOException("The weights were modified while they were written to " + file);
+		}
+
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			channel.position(HEADER_SIZE);
+			CRC32 checksum = new CRC32();
+			DataOutputStream body = new DataOutputStream(
+					new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), checksum)));
+			for (int i = 0; i < n; i++) {
+				body.writeDouble(values[i]);
+			}
+			long bodyLength = (long) n * Double.BYTES;
+			for (int i = 0; i < n; i++) {
+				byte[] name = dictionary.getFeatureName(features[i]).getBytes(StandardCharsets.UTF_8);
+				body.writeInt(name.length);
+				body.write(name);
+				bodyLength += Integer.BYTES + name.length;
+			}
+			body.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC_NUMBER).putInt(VERSION).putInt(n).putLong(bodyLength).putLong(checksum.getValue());
+			header.flip();
+			channel.position(0);
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+		}
+	}
+
+	/**
+	 * Reads the weights from the given file and sets them in the given vector.
+	 * If the vector is an empty sparse Vector, it is replaced by a vector that
+	 * is pre-sized to the number of weights in the file. Thus, the returned
+	 * vector should be used as the new weights.
+	 *
+	 * @param file
+	 * @param weights
+	 * @return
+	 * @throws IOException
+	 *             if the file is not a weights file of a supported version or
+	 *             if it is corrupted.
+	 */
+	public static Vector read(File file, Vector weights) throws IOException {
+		FeatureDictionary dictionary = FeatureDictionary.getInstance();
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			FileChannel channel = in.getChannel();
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a binary weights file: " + file);
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC_NUMBER) {
+				throw new IOException("Not a binary weights file: " + file);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported version %s of binary weights file %s.", version, file));
+			}
+			int n = header.getInt();
+			long bodyLength = header.getLong();
+			long expectedChecksum = header.getLong();
+			if (n < 0 || channel.size() != HEADER_SIZE + bodyLength) {
+				throw new IOException("Truncated binary weights file: " + file);
+			}
+			if (checksum(channel, HEADER_SIZE, bodyLength) != expectedChecksum) {
+				throw new IOException("Checksum mismatch in binary weights file: " + file);
+			}
+
+			if (weights.getClass() == Vector.class && weights.size() == 0) {
+				weights = new Vector(n);
+			}
+			MappedInput values = new MappedInput(channel, HEADER_SIZE);
+			MappedInput names = new MappedInput(channel, HEADER_SIZE + (long) n * Double.BYTES);
+			byte[] buffer = new byte[64];
+			for (int i = 0; i < n; i++) {
+				double value = values.getDouble();
+				int length = names.getInt();
+				if (length > buffer.length) {
+					buffer = new byte[Math.max(length, 2 * buffer.length)];
+				}
+				names.get(buffer, length);
+				/*
+				 * Names are indexed directly (not hashed), since the names of
+				 * hashed features are already the names of their buckets.
+				 */
+				weights.set(dictionary.getIndex(new String(buffer, 0, length, StandardCharsets.UTF_8)), value);
+			}
+			return weights;
+		}
+	}
+
+	/**
+	 * Returns true if the given file starts with the magic number of this
+	 * format.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isBinaryWeightsFile(File file) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			return in.length() >= HEADER_SIZE && in.readInt() == MAGIC_NUMBER;
+		}
+	}
+
+	private static long checksum(FileChannel channel, long position, long length) throws IOException {
+		CRC32 checksum = new CRC32();
+		for (long offset = 0; offset < length; offset += MAX_WINDOW_SIZE) {
+			long size = Math.min(MAX_WINDOW_SIZE, length - offset);
+			checksum.update(channel.map(MapMode.READ_ONLY, position + offset, size));
+		}
+		return checksum.getValue();
+	}
+
+	/**
+	 * Reads a region of a file sequentially through a window of memory that
+	 * is moved along the file on demand.
+	 */
+	private static class MappedInput {
+		private final FileChannel channel;
+		private long position;
+		private MappedByteBuffer window;
+
+		public MappedInput(FileChannel channel, long position) throws IOException {
+			this.channel = channel;
+			this.position = position;
+			this.window = map(position);
+		}
+
+		private MappedByteBuffer map(long position) throws IOException {
+			long size = Math.min(MAX_WINDOW_SIZE, channel.size() - position);
+			return channel.map(MapMode.READ_ONLY, position, size);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (window.remaining() < bytes) {
+				window = map(position);
+				if (window.remaining() < bytes) {
+					throw new IOException("Unexpected end of binary weights file.");
+				}
+			}
+			position += bytes;
+		}
+
+		public double getDouble() throws IOException {
+			ensure(Double.BYTES);
+			return window.getDouble();
+		}
+
+		public int getInt() throws IOException {
+			ensure(Integer.BYTES);
+			return window.getInt();
+		}
+
+		public void get(byte[] destination, int length) throws IOException {
+			ensure(length);
+			window.get(destination, 0, length);
+		}
+	}
+}
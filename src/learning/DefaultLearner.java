@@ -4,11 +4,12 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import templates.AbstractTemplate;
 import utility.VectorUtil;
 import variables.AbstractState;
@@ -27,6 +28,8 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 	 */
 	protected double l2 = 0.01;
 
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+
 	/**
 	 * This implementation of the learner implements the SampleRank learning
 	 * scheme. Very generally speaking, given a pair of states, the learner
@@ -66,6 +69,8 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 	 */
 	@Override
 	public void update(final StateT currentState, List<StateT> possibleNextStates) {
+		Timer updateTimer = metrics.timer("learner.update");
+		long start = updateTimer.start();
 		Map<AbstractTemplate<?, StateT, ?>, Vector> weightGradients = new HashMap<>();
 		for (AbstractTemplate<?, StateT, ?> t : model.getTemplates()) {
 			weightGradients.put(t, new Vector());
@@ -82,6 +87,7 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 			applyWeightUpdate(weightGradients, 1);
 		}
 		updates++;
+		updateTimer.stop(start);
 	}
 
 	/**
@@ -137,11 +143,12 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 			Vector features = featureDifferences.get(t);
 			Vector gradients = weightUpdates.get(t);
 
-			for (Entry<String, Double> featureDifference : features.getFeatures().entrySet()) {
-				double weightGradient = learningDirection * featureDifference.getValue();
-				log.trace("\t%s -> %s:\t%s", featureDifference.getValue(), weightGradient, featureDifference.getKey());
-				gradients.addToValue(featureDifference.getKey(), weightGradient);
-			}
+			features.forEachFeature((feature, featureDifference) -> {
+				double weightGradient = learningDirection * featureDifference;
+				log.trace("\t%s -> %s:\t%s", featureDifference, weightGradient,
+						FeatureDictionary.getInstance().getFeatureName(feature));
+				gradients.addToValue(feature, weightGradient);
+			});
 		}
 	}
 
@@ -155,13 +162,17 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 		for (AbstractTemplate<?, StateT, ?> t : model.getTemplates()) {
 			log.trace("Template: %s", t.getClass().getSimpleName());
 			Vector weightUpdatesForTemplate = weightGradients.get(t);
-			Vector weights = t.getWeights();
-			for (Entry<String, Double> weightGradient : weightUpdatesForTemplate.getFeatures().entrySet()) {
-				double gradient = weightGradient.getValue() / numberOfUpdates
-						- l2 * weights.getValueOfFeature(weightGradient.getKey());
-				log.trace("\t%s -> %s:\t%s", weightGradient.getValue(), gradient, currentAlpha,
-						weightGradient.getKey());
-				t.update(weightGradient.getKey(), -gradient * currentAlpha);
+			t.lockWeights();
+			try {
+				Vector weights = t.getWeights();
+				weightUpdatesForTemplate.forEachFeature((feature, weightGradient) -> {
+					double gradient = weightGradient / numberOfUpdates - l2 * weights.getValueOfFeature(feature);
+					log.trace("\t%s -> %s:\t%s", weightGradient, gradient, currentAlpha,
+							FeatureDictionary.getInstance().getFeatureName(feature));
+					t.update(feature, -gradient * currentAlpha);
+				});
+			} finally {
+				t.unlockWeights();
 			}
 		}
 	}
@@ -183,6 +194,21 @@ public class DefaultLearner<StateT extends AbstractState<?>> implements Learner<
 		return O1 > O2;
 	}
 
+	@Override
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the registry in which the metrics of this learner are recorded. By
+	 * default, the shared registry MetricsRegistry.getDefault() is used.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
 	public Model<?, StateT> getModel() {
 		return model;
 	}
@@ -0,0 +1,341 @@
+package learning;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A vector that stores its values in a dense, off-heap array. Each vector maps
+ * the indices of its features in the FeatureDictionary to consecutive slots
+ * of the array in the order in which the features are added, so that the size
+ * of the array depends on the number of features of this vector (e.g. of one
+ * template) and not on the number of features of all templates in the global
+ * dictionary. The array is allocated outside of the Java heap and grows on
+ * demand, so that very large weight vectors neither cost a boxed map entry per
+ * feature nor need to be traversed by the garbage collector. Lookups and
+ * updates are a probe in a primitive hash table of the slots and a plain
+ * array access.
+ * </br>
+ * This implementation is intended for template weights (see
+ * AbstractTemplate.setWeights()). Sparse vectors like feature vectors of
+ * factors should still use the default Vector. A feature keeps its slot when
+ * its value is set to 0. The number of features is limited to
+ * Integer.MAX_VALUE / 8. The off-heap memory is released when the vector is
+ * garbage collected.
+ * </br>
+ * Like Vector, this class is not synchronized. However, reading values while
+ * other threads update the vector never fails, and concurrent updates do not
+ * fail either, since new slots are only added under a lock and the arrays
+ * never shrink. This allows lock-free (Hogwild-style) training with several
+ * threads (see ParallelTrainer). Concurrent updates are not atomic, though:
+ * concurrent updates of the same feature (e.g. <b>addToValue()</b>) might be
+ * lost and <b>size()</b> is only approximate.
+ */
+public class DenseVector extends Vector {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE / Double.BYTES;
+
+	/**
+	 * The values of the features by slot.
+	 */
+	private transient volatile DoubleBuffer values;
+	/**
+	 * The feature indices by slot.
+	 */
+	private transient volatile int[] features;
+	/**
+	 * Open addressing hash table (linear probing) of the slots of the
+	 * features. An entry stores the feature index + 1 in its upper and the
+	 * slot in its lower 32 bits, so that 0 marks a free entry and a reader
+	 * never sees a feature without its slot. Entries are never removed.
+	 */
+	private transient volatile AtomicLongArray slotTable;
+	private transient volatile int numberOfSlots;
+	/**
+	 * Number of non-zero entries.
+	 */
+	private transient int size;
+	/**
+	 * Guards the addition of slots and the growth of the arrays.
+	 */
+	private transient Object growthLock;
+	/**
+	 * True while the values are copied into a grown array.
+	 */
+	private transient volatile boolean growing;
+
+	public DenseVector() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty dense vector that can store the given number of
+	 * features without growing.
+	 *
+	 * @param initialCapacity
+	 */
+	public DenseVector(int initialCapacity) {
+		super(0);
+		initialize(Math.max(1, Math.min(MAX_CAPACITY, initialCapacity)));
+	}
+
+	/**
+	 * Creates a dense copy of the given vector.
+	 *
+	 * @param v
+	 */
+	public DenseVector(Vector v) {
+		this(Math.max(DEFAULT_CAPACITY, v.size()));
+		setFeatureHasher(v.getFeatureHasher());
+		v.forEachFeature(this::set);
+	}
+
+	private void initialize(int capacity) {
+		values = allocate(capacity);
+		features = new int[capacity];
+		slotTable = new AtomicLongArray(tableSize(capacity));
+		growthLock = new Object();
+	}
+
+	private static DoubleBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	private static int tableSize(int capacity) {
+		int tableSize = 2;
+		while (tableSize < 2 * capacity) {
+			tableSize <<= 1;
+		}
+		return tableSize;
+	}
+
+	private static int hash(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the slot of the given feature or -1 if this vector never
+	 * contained the feature.
+	 */
+	private int slotOf(int feature) {
+		AtomicLongArray table = slotTable;
+		int key = feature + 1;
+		int mask = table.length() - 1;
+		int i = hash(key, mask);
+		long entry;
+		while ((entry = table.get(i)) != 0) {
+			if ((int) (entry >>> 32) == key) {
+				return (int) entry;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static void insert(AtomicLongArray table, int key, int slot) {
+		int mask = table.length() - 1;
+		int i = hash(key, mask);
+		while (table.get(i) != 0) {
+			i = (i + 1) & mask;
+		}
+		table.set(i, ((long) key << 32) | slot);
+	}
+
+	/**
+	 * Returns the slot of the given feature and adds a slot for it if there
+	 * is none yet.
+	 */
+	private int addSlot(int feature) {
+		synchronized (growthLock) {
+			/*
+			 * Another thread might have added the feature in the meantime.
+			 */
+			int slot = slotOf(feature);
+			if (slot >= 0) {
+				return slot;
+			}
+			slot = numberOfSlots;
+			if (slot >= MAX_CAPACITY) {
+				throw new IllegalArgumentException(
+						String.format("A dense vector cannot store more than %s features.", MAX_CAPACITY));
+			}
+			if (slot >= values.capacity()) {
+				grow(slot);
+			}
+			features[slot] = feature;
+			numberOfSlots = slot + 1;
+			AtomicLongArray table = slotTable;
+			if (2 * numberOfSlots > table.length()) {
+				AtomicLongArray newTable = new AtomicLongArray(table.length() << 1);
+				for (int s = 0; s < slot; s++) {
+					insert(newTable, features[s] + 1, s);
+				}
+				insert(newTable, feature + 1, slot);
+				slotTable = newTable;
+			} else {
+				insert(table, feature + 1, slot);
+			}
+			return slot;
+		}
+	}
+
+	/**
+	 * Grows the arrays so that they can store the given slot. Must be called
+	 * with the growth lock.
+	 */
+	private void grow(int slot) {
+		DoubleBuffer oldValues = values;
+		int capacity = oldValues.capacity();
+		int newCapacity = Math.max(DEFAULT_CAPACITY, capacity);
+		while (newCapacity <= slot) {
+			newCapacity = (int) Math.min(MAX_CAPACITY, 2L * newCapacity);
+		}
+		features = Arrays.copyOf(features, newCapacity);
+		DoubleBuffer newValues = allocate(newCapacity);
+		growing = true;
+		DoubleBuffer copy = oldValues.duplicate();
+		copy.clear();
+		newValues.put(copy);
+		values = newValues;
+		growing = false;
+	}
+
+	private void write(int slot, double value) {
+		DoubleBuffer values = this.values;
+		values.put(slot, value);
+		if (growing || this.values != values) {
+			/*
+			 * The value was possibly not copied into the grown array.
+			 */
+			synchronized (growthLock) {
+				this.values.put(slot, value);
+			}
+		}
+	}
+
+	@Override
+	public void set(int feature, double value) {
+		int slot = slotOf(feature);
+		if (slot < 0) {
+			if (value == 0) {
+				return;
+			}
+			slot = addSlot(feature);
+		}
+		double previous = values.get(slot);
+		if (previous == 0 && value != 0) {
+			size++;
+		} else if (previous != 0 && value == 0) {
+			size--;
+		}
+		write(slot, value);
+	}
+
+	@Override
+	public double getValueOfFeature(int feature) {
+		int slot = slotOf(feature);
+		return slot >= 0 ? values.get(slot) : 0;
+	}
+
+	@Override
+	public void remove(int feature) {
+		set(feature, 0);
+	}
+
+	@Override
+	public void forEachFeature(FeatureConsumer consumer) {
+		int numberOfSlots = this.numberOfSlots;
+		int[] features = this.features;
+		DoubleBuffer values = this.values;
+		for (int slot = 0; slot < numberOfSlots; slot++) {
+			double value = values.get(slot);
+			if (value != 0) {
+				consumer.accept(features[slot], value);
+			}
+		}
+	}
+
+	@Override
+	public Vector newEmptyVector() {
+		DenseVector vector = new DenseVector();
+		vector.setFeatureHasher(getFeatureHasher());
+		return vector;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	protected double sumOfProducts(Vector other) {
+		int numberOfSlots = this.numberOfSlots;
+		int[] features = this.features;
+		DoubleBuffer values = this.values;
+		double result = 0;
+		for (int slot = 0; slot < numberOfSlots; slot++) {
+			double value = values.get(slot);
+			if (value != 0) {
+				result += value * other.getValueOfFeature(features[slot]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public void normalize() {
+		double length = Math.sqrt(dotProduct(this));
+		if (length > 0) {
+			int numberOfSlots = this.numberOfSlots;
+			for (int slot = 0; slot < numberOfSlots; slot++) {
+				write(slot, values.get(slot) / length);
+			}
+		}
+	}
+
+	/**
+	 * Replaces all values of this vector with the values of the given vector.
+	 *
+	 * @param v
+	 */
+	public void assign(Vector v) {
+		if (v == this) {
+			return;
+		}
+		int numberOfSlots = this.numberOfSlots;
+		for (int slot = 0; slot < numberOfSlots; slot++) {
+			write(slot, 0);
+		}
+		size = 0;
+		v.forEachFeature(this::set);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int slot = 0; slot < numberOfSlots; slot++) {
+			double value = values.get(slot);
+			if (value != 0) {
+				out.writeObject(FeatureDictionary.getInstance().getFeatureName(features[slot]));
+				out.writeDouble(value);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int numberOfFeatures = in.readInt();
+		initialize(Math.max(DEFAULT_CAPACITY, numberOfFeatures));
+		for (int i = 0; i < numberOfFeatures; i++) {
+			String feature = (String) in.readObject();
+			set(FeatureDictionary.getInstance().getIndex(feature), in.readDouble());
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package learning;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The feature dictionary assigns a unique, dense integer index to every
+ * feature name. Vectors store their values w.r.t. these indices so that the
+ * arithmetic operations during scoring and learning do not need to hash
+ * Strings or box values. The dictionary is shared by all vectors and is
+ * thread safe: a name is interned exactly once, even if several threads
+ * request its index at the same time.
+ */
+public class FeatureDictionary {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final FeatureDictionary INSTANCE = new FeatureDictionary();
+
+	private final Map<String, Integer> featureIndices = new ConcurrentHashMap<>();
+	private volatile String[] featureNames = new String[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Returns the dictionary that is shared by all vectors of this JVM.
+	 *
+	 * @return
+	 */
+	public static FeatureDictionary getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the index of the given feature. If the feature was never seen
+	 * before, a new index is assigned to it.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public int getIndex(String feature) {
+		Integer index = featureIndices.get(feature);
+		if (index != null) {
+			return index;
+		}
+		return featureIndices.computeIfAbsent(feature, this::register);
+	}
+
+	/**
+	 * Returns the index of the given feature or -1 if this feature was never
+	 * interned. In contrast to <b>getIndex</b>, this method does not change
+	 * the dictionary and should be used for read-only lookups.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public int lookupIndex(String feature) {
+		Integer index = featureIndices.get(feature);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the name of the feature with the given index.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String getFeatureName(int index) {
+		return featureNames[index];
+	}
+
+	public int size() {
+		return featureIndices.size();
+	}
+
+	private synchronized Integer register(String feature) {
+		String[] names = featureNames;
+		if (size == names.length) {
+			names = Arrays.copyOf(names, names.length * 2);
+		}
+		int index = size++;
+		names[index] = feature;
+		featureNames = names;
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "FeatureDictionary [#Features: " + size() + "]";
+	}
+}
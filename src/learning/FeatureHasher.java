@@ -0,0 +1,223 @@
+package learning;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps feature names to a fixed number of buckets (hashing trick), so that the
+ * number of distinct features of a template is bounded regardless of the
+ * vocabulary of the corpus. Each bucket is represented by a feature with the
+ * name <i>&lt;namespace&gt;#&lt;bucket&gt;</i> in the FeatureDictionary, so
+ * that hashed vectors can be stored, saved and loaded like any other vector.
+ * </br>
+ * Feature names are hashed with the 32 bit MurmurHash3 of their characters.
+ * With <i>signed</i> hashing, the value of a feature is multiplied by +1 or -1
+ * depending on an additional bit of its hash, so that collisions cancel out in
+ * expectation instead of accumulating. The values of all features of a bucket
+ * are summed up, i.e. setting a feature adds its value to its bucket.
+ * Optionally, a reverse dictionary of all feature names that were mapped to a
+ * bucket can be kept for debugging.
+ * </br>
+ * A feature hasher is enabled for a template with
+ * <b>AbstractTemplate.setFeatureHasher()</b>, which applies it to the weights
+ * of the template and to the feature vectors of all its factors.
+ */
+public class FeatureHasher implements Serializable {
+
+	private static final int SEED = 0x9747b28c;
+
+	private final String namespace;
+	private final int numberOfBuckets;
+	private final boolean signed;
+	private final boolean reverseDictionary;
+
+	/**
+	 * The feature index + 1 of each bucket in the FeatureDictionary, or 0 if
+	 * the bucket was not used yet.
+	 */
+	private transient volatile int[] bucketIndices;
+	private transient Map<Integer, Set<String>> bucketFeatures;
+
+	/**
+	 * Creates a feature hasher with the given number of buckets. The names of
+	 * the buckets are prefixed with the given namespace which should be unique
+	 * for each template.
+	 *
+	 * @param namespace
+	 * @param numberOfBuckets
+	 * @param signed
+	 * @param reverseDictionary
+	 *            if true, all feature names are recorded for their bucket
+	 *            (see <b>getFeatureNames()</b>)
+	 */
+	public FeatureHasher(String namespace, int numberOfBuckets, boolean signed, boolean reverseDictionary) {
+		if (numberOfBuckets < 1) {
+			throw new IllegalArgumentException("At least one bucket is required for feature hashing.");
+		}
+		this.namespace = namespace;
+		this.numberOfBuckets = numberOfBuckets;
+		this.signed = signed;
+		this.reverseDictionary = reverseDictionary;
+	}
+
+	public FeatureHasher(String namespace, int numberOfBuckets) {
+		this(namespace, numberOfBuckets, true, false);
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public int getNumberOfBuckets() {
+		return numberOfBuckets;
+	}
+
+	public boolean isSigned() {
+		return signed;
+	}
+
+	/**
+	 * Returns the 32 bit MurmurHash3 of the characters of the given feature
+	 * name.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public int hash(String feature) {
+		int h = SEED;
+		int length = feature.length();
+		int i = 1;
+		for (; i < length; i += 2) {
+			h = mix(h, feature.charAt(i - 1) | (feature.charAt(i) << 16));
+		}
+		if ((length & 1) == 1) {
+			int k = feature.charAt(length - 1);
+			k *= 0xcc9e2d51;
+			k = Integer.rotateLeft(k, 15);
+			k *= 0x1b873593;
+			h ^= k;
+		}
+		h ^= 2 * length;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int mix(int h, int k) {
+		k *= 0xcc9e2d51;
+		k = Integer.rotateLeft(k, 15);
+		k *= 0x1b873593;
+		h ^= k;
+		h = Integer.rotateLeft(h, 13);
+		return h * 5 + 0xe6546b64;
+	}
+
+	/**
+	 * Returns the bucket of a feature with the given hash.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public int getBucket(int hash) {
+		return (hash & Integer.MAX_VALUE) % numberOfBuckets;
+	}
+
+	/**
+	 * Returns the sign (+1 or -1) with which the value of a feature with the
+	 * given hash is multiplied. Without signed hashing, the sign is always +1.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public double getSign(int hash) {
+		return signed && hash < 0 ? -1 : 1;
+	}
+
+	/**
+	 * Returns the index (see FeatureDictionary) of the bucket of the given
+	 * feature with the given hash.
+	 *
+	 * @param hash
+	 * @param feature
+	 * @return
+	 */
+	public int getIndex(int hash, String feature) {
+		int bucket = getBucket(hash);
+		int[] indices = bucketIndices;
+		if (indices == null) {
+			indices = initialize();
+		}
+		int index = indices[bucket] - 1;
+		if (index < 0) {
+			index = FeatureDictionary.getInstance().getIndex(getBucketName(bucket));
+			indices[bucket] = index + 1;
+		}
+		if (reverseDictionary) {
+			bucketFeatures.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(feature);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index (see FeatureDictionary) of the bucket of a feature
+	 * with the given hash, or -1 if this bucket was never used. In contrast to
+	 * <b>getIndex()</b>, this method neither adds the bucket to the
+	 * FeatureDictionary nor records the feature in the reverse dictionary and
+	 * should be used for read-only lookups.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	public int lookupIndex(int hash) {
+		int bucket = getBucket(hash);
+		int[] indices = bucketIndices;
+		if (indices != null && indices[bucket] > 0) {
+			return indices[bucket] - 1;
+		}
+		return FeatureDictionary.getInstance().lookupIndex(getBucketName(bucket));
+	}
+
+	private synchronized int[] initialize() {
+		if (bucketIndices == null) {
+			bucketFeatures = new ConcurrentHashMap<>();
+			bucketIndices = new int[numberOfBuckets];
+		}
+		return bucketIndices;
+	}
+
+	/**
+	 * Returns the name of the given bucket in the FeatureDictionary.
+	 *
+	 * @param bucket
+	 * @return
+	 */
+	public String getBucketName(int bucket) {
+		return namespace + "#" + bucket;
+	}
+
+	/**
+	 * Returns all feature names that were mapped to the given bucket since
+	 * this hasher was created. The names are only recorded if the reverse
+	 * dictionary is enabled.
+	 *
+	 * @param bucket
+	 * @return
+	 */
+	public Set<String> getFeatureNames(int bucket) {
+		if (bucketFeatures == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(bucketFeatures.getOrDefault(bucket, Collections.emptySet()));
+	}
+
+	@Override
+	public String toString() {
+		return "FeatureHasher [namespace=" + namespace + ", #Buckets=" + numberOfBuckets + ", signed=" + signed + "]";
+	}
+}
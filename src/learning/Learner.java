@@ -2,6 +2,7 @@ package learning;
 
 import java.util.List;
 
+import metrics.MetricsRegistry;
 import variables.AbstractState;
 
 /**
@@ -16,4 +17,14 @@ public interface Learner<StateT extends AbstractState<?>> {
 	public void update(StateT currentState, StateT possibleNextState);
 
 	public void update(StateT currentState, List<StateT> possibleNextStates);
+
+	/**
+	 * Returns the registry in which this learner records the duration of its
+	 * updates (timer <i>learner.update</i>).
+	 * 
+	 * @return
+	 */
+	public default MetricsRegistry getMetrics() {
+		return MetricsRegistry.getDefault();
+	}
 }
@@ -1,21 +1,30 @@
 package learning;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
@@ -27,15 +36,25 @@ import factors.Factor;
 import factors.FactorGraph;
 import factors.FactorPattern;
 import factors.FactorPool;
+import learning.callbacks.LoadingCallback;
+import learning.parallel.ModelScheduler;
+import learning.parallel.ModelScheduler.Phase;
+import learning.scorer.AbstractAdditiveScorer;
 import learning.scorer.Scorer;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import templates.AbstractTemplate;
 import templates.TemplateFactory;
+import utility.ExecutionContext;
+import utility.ExecutionContexts;
 import utility.Utils;
+import utility.VariableID;
 import variables.AbstractState;
 
 public class Model<InstanceT extends Instance, StateT extends AbstractState<InstanceT>> implements Serializable {
 
 	private static final String TEMPLATE_WEIGHTS_FILE_SUFFIX = ".weights.tsv";
+	private static final String TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX = ".weights.bin";
 
 	private static Logger log = LogManager.getFormatterLogger(Model.class.getName());
 
@@ -46,8 +65,20 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 
 	private boolean sequentialScoring = false;
 
+	private boolean deltaScoring = false;
+
+	private boolean binaryModelFormat = false;
+
 	protected Scorer scorer;
 
+	private transient ModelScheduler scheduler;
+
+	private transient ExecutionContext executionContext;
+
+	private transient MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	private transient List<LoadingCallback> loadingCallbacks = new ArrayList<>();
+
 	/**
 	 * The model contains a collection of templates that can generate factors
 	 * (and features) for a given state. The model's weights are stored in the
@@ -87,6 +118,44 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 		this.multiThreaded = multiThreaded;
 	}
 
+	/**
+	 * Returns the context in which this model runs its parallel computations.
+	 * By default, this is the common ForkJoinPool.
+	 * 
+	 * @return
+	 */
+	public ExecutionContext getExecutionContext() {
+		return executionContext != null ? executionContext : ExecutionContexts.common();
+	}
+
+	/**
+	 * Sets the context in which this model applies its templates and scores
+	 * states if it is multi-threaded, e.g. a dedicated pool that is not shared
+	 * with other components of the application (see ExecutionContexts).
+	 * 
+	 * @param executionContext
+	 */
+	public void setExecutionContext(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+
+	public ModelScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * If a scheduler is set and this model is multi-threaded, the templates
+	 * are applied to the states in work units of similar cost instead of
+	 * nested parallel streams (see ModelScheduler). The units run in the
+	 * execution context of this model unless the scheduler was created with
+	 * a context of its own.
+	 *
+	 * @param scheduler
+	 */
+	public void setScheduler(ModelScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
 	public boolean isSequentialScoring() {
 		return sequentialScoring;
 	}
@@ -95,6 +164,83 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 		this.sequentialScoring = sequentialScoring;
 	}
 
+	public boolean isDeltaScoring() {
+		return deltaScoring;
+	}
+
+	/**
+	 * If set to true, states that were derived from another state which is
+	 * scored in the same call to <b>score()</b> (e.g. the successor states of
+	 * the current state during sampling) are scored incrementally: their score
+	 * is computed from the score of their parent state and the factors that
+	 * were added or removed compared to the parent. This requires a scorer
+	 * that extends AbstractAdditiveScorer. Otherwise, all states are scored
+	 * from scratch.
+	 *
+	 * @param deltaScoring
+	 */
+	public void setDeltaScoring(boolean deltaScoring) {
+		if (deltaScoring && !(scorer instanceof AbstractAdditiveScorer)) {
+			log.warn("Delta scoring is not supported by scorer %s. States are scored from scratch.",
+					scorer.getClass().getSimpleName());
+		}
+		this.deltaScoring = deltaScoring;
+	}
+
+	/**
+	 * Returns the registry in which this model records how many factors were
+	 * computed and reused and how long the application of the templates and
+	 * the scoring took.
+	 * 
+	 * @return
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics != null ? metrics : MetricsRegistry.getDefault();
+	}
+
+	/**
+	 * Sets the registry in which the metrics of this model are recorded. By
+	 * default, the shared registry MetricsRegistry.getDefault() is used.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	public boolean isBinaryModelFormat() {
+		return binaryModelFormat;
+	}
+
+	/**
+	 * If set to true, <b>saveModelToFile()</b> stores the weights of each
+	 * template in the binary format of BinaryWeightsFormat. Otherwise (the
+	 * default), the weights are stored as tab separated text files. An
+	 * existing text file of a template is kept when its binary file is saved.
+	 * <b>loadModelFromDir()</b> reads both formats and prefers the binary file
+	 * of a template.
+	 * 
+	 * @param binaryModelFormat
+	 */
+	public void setBinaryModelFormat(boolean binaryModelFormat) {
+		this.binaryModelFormat = binaryModelFormat;
+	}
+
+	public List<LoadingCallback> getLoadingCallbacks() {
+		if (loadingCallbacks == null) {
+			loadingCallbacks = new ArrayList<>();
+		}
+		return loadingCallbacks;
+	}
+
+	public void addLoadingCallback(LoadingCallback loadingCallback) {
+		getLoadingCallbacks().add(loadingCallback);
+	}
+
+	public void removeLoadingCallback(LoadingCallback loadingCallback) {
+		getLoadingCallbacks().remove(loadingCallback);
+	}
+
 	public Scorer getScorer() {
 		return scorer;
 	}
@@ -111,44 +257,110 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 		loadModelFromDir(modelDir, factory);
 	}
 
+	/**
+	 * Loads the weights of all templates from the given directory. The
+	 * template of each weights file is created by the <i>factory</i>. Binary
+	 * weights files (see BinaryWeightsFormat) take precedence over text files
+	 * of the same template. If the model is multi-threaded, all files are
+	 * loaded concurrently in the execution context of the model and large
+	 * text files are additionally split into chunks that are parsed in
+	 * parallel (see TextWeightsReader). The progress
+	 * is reported to the registered LoadingCallbacks and the overall loading
+	 * time is recorded by the timer <i>model.load</i>.
+	 * 
+	 * @param modelDir
+	 * @param factory
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 * @throws UnkownTemplateRequestedException
+	 * @throws Exception
+	 */
 	public void loadModelFromDir(File modelDir, TemplateFactory<InstanceT, StateT> factory)
 			throws FileNotFoundException, IOException, UnkownTemplateRequestedException, Exception {
 		log.info("Load model from directory %s ...", modelDir);
-		File[] templateFiles = modelDir.listFiles(f -> f.getName().endsWith(TEMPLATE_WEIGHTS_FILE_SUFFIX));
+		Timer loadTimer = getMetrics().timer("model.load");
+		long start = loadTimer.start();
+		/*
+		 * Prefer the binary file of a template and fall back to its text file.
+		 */
+		List<File> templateFiles = new ArrayList<>();
+		templateFiles.addAll(Arrays.asList(
+				modelDir.listFiles(f -> f.getName().endsWith(TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX))));
+		templateFiles.addAll(Arrays.asList(modelDir.listFiles(f -> f.getName().endsWith(TEMPLATE_WEIGHTS_FILE_SUFFIX)
+				&& !new File(modelDir, getTemplateName(f) + TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX).exists())));
+
+		/*
+		 * The factory is not required to be thread safe, so the templates are
+		 * created up front.
+		 */
+		List<AbstractTemplate<InstanceT, StateT, ?>> loadedTemplates = new ArrayList<>();
+		long totalBytes = 0;
 		for (File templateFile : templateFiles) {
-			AbstractTemplate<InstanceT, StateT, ?> template = loadTemplateWeights(templateFile, factory);
-			templates.add(template);
+			String templateName = getTemplateName(templateFile);
+			log.info("Load Template %s from file %s ...", templateName, templateFile);
+			loadedTemplates.add(factory.newInstance(templateName));
+			totalBytes += templateFile.length();
+		}
+		for (LoadingCallback c : getLoadingCallbacks()) {
+			c.onStartLoading(this, templateFiles.size(), totalBytes);
 		}
-		log.info("Model successfully loaded!");
-	}
-
-	private AbstractTemplate<InstanceT, StateT, ?> loadTemplateWeights(File templateFile,
-			TemplateFactory<InstanceT, StateT> factory)
-					throws IOException, UnkownTemplateRequestedException, Exception {
-		System.out.println(templateFile.getName());
-		System.out.println(Arrays.toString(templateFile.getName().split("\\.", 2)));
-		String templateName = templateFile.getName().split("\\.", 2)[0];
-
-		log.info("Load Template %s from file %s ...", templateName, templateFile);
-
-		AbstractTemplate<InstanceT, StateT, ?> template = factory.newInstance(templateName);
 
-		Vector weights = template.getWeights();
+		final long bytes = totalBytes;
+		AtomicLong loadedBytes = new AtomicLong();
+		LongConsumer progress = b -> {
+			long loaded = loadedBytes.addAndGet(b);
+			for (LoadingCallback c : getLoadingCallbacks()) {
+				c.onProgress(this, loaded, bytes);
+			}
+		};
+		IntStream indices = IntStream.range(0, templateFiles.size());
+		IntStream files = multiThreaded ? indices.parallel() : indices;
+		/*
+		 * The parallel streams of the TextWeightsReaders run in the same
+		 * context.
+		 */
+		try {
+			getExecutionContext().run(() -> files.forEach(i -> {
+				try {
+					loadTemplateWeights(templateFiles.get(i), loadedTemplates.get(i), progress);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		templates.addAll(loadedTemplates);
 
-		FileReader fReader = new FileReader(templateFile);
-		BufferedReader bReader = new BufferedReader(fReader);
+		long time = loadTimer.stop(start);
+		for (LoadingCallback c : getLoadingCallbacks()) {
+			c.onEndLoading(this, templateFiles.size(), totalBytes);
+		}
+		log.info("Model successfully loaded in %s ms!", time / 1000000);
+	}
 
-		bReader.lines().forEach(line -> {
-			String[] parts = line.split("\t", 2);
-			String featureName = parts[0];
-			Double featureValue = Double.valueOf(parts[1]);
-			weights.set(featureName, featureValue);
-		});
-		bReader.close();
+	private static String getTemplateName(File templateFile) {
+		return templateFile.getName().split("\\.", 2)[0];
+	}
 
-		log.info("%s feature weights restored.", weights.getFeatureNames().size());
-		log.info("Template successfully loaded!");
-		return template;
+	private void loadTemplateWeights(File templateFile, AbstractTemplate<InstanceT, StateT, ?> template,
+			LongConsumer progress) throws IOException {
+		Vector weights;
+		if (templateFile.getName().endsWith(TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX)) {
+			weights = BinaryWeightsFormat.read(templateFile, template.getWeights());
+			progress.accept(templateFile.length());
+		} else {
+			weights = new TextWeightsReader(multiThreaded).read(templateFile, template.getWeights(), progress);
+		}
+		if (weights != template.getWeights()) {
+			template.setWeights(weights);
+		}
+		/*
+		 * The readers may fill the existing weights in place, which outdates
+		 * the cached scores of the factors, too.
+		 */
+		template.weightsChanged();
+		log.info("%s feature weights of template %s restored.", weights.size(), getTemplateName(templateFile));
 	}
 
 	public void saveModelToFile(String modelsDirPath, String modelDirName) throws FileNotFoundException, IOException {
@@ -173,15 +385,32 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 
 		log.info("Save Model to directory %s ...", modelDir);
 		for (AbstractTemplate<InstanceT, StateT, ?> template : templates) {
-			saveTemplateWeights(modelDir, template);
+			if (binaryModelFormat) {
+				saveBinaryTemplateWeights(modelDir, template);
+			} else {
+				saveTemplateWeights(modelDir, template);
+			}
 		}
 		log.info("Model successfully saved!");
 	}
 
+	private void saveBinaryTemplateWeights(File modelDir, AbstractTemplate<InstanceT, StateT, ?> template)
+			throws IOException {
+		File templateFile = new File(modelDir,
+				template.getClass().getSimpleName() + TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX);
+		log.info("Save Template %s to file %s ...", template.getClass().getSimpleName(), templateFile);
+		BinaryWeightsFormat.write(template.getWeights(), templateFile);
+		log.info("Template successfully saved!");
+	}
+
 	private void saveTemplateWeights(File modelDir, AbstractTemplate<InstanceT, StateT, ?> template)
 			throws IOException {
 		File templateFile = new File(modelDir, template.getClass().getSimpleName() + TEMPLATE_WEIGHTS_FILE_SUFFIX);
 		log.info("Save Template %s to file %s ...", template.getClass().getSimpleName(), templateFile);
+		/*
+		 * Remove an outdated binary file, which would take precedence.
+		 */
+		new File(modelDir, template.getClass().getSimpleName() + TEMPLATE_WEIGHTS_BINARY_FILE_SUFFIX).delete();
 
 		FileWriter fWriter = new FileWriter(templateFile);
 		BufferedWriter bWriter = new BufferedWriter(fWriter);
@@ -199,6 +428,16 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 	}
 
 	public void score(List<StateT> states, InstanceT instance, FactorPool factorPool) {
+		if (multiThreaded) {
+			getExecutionContext().run(() -> scoreInContext(states, instance, factorPool));
+		} else {
+			scoreInContext(states, instance, factorPool);
+		}
+	}
+
+	private void scoreInContext(List<StateT> states, InstanceT instance, FactorPool factorPool) {
+		Timer scoringTimer = getMetrics().timer("model.scoring");
+		getMetrics().counter("model.states.scored").add(states.size());
 		if (sequentialScoring) {
 			for (StateT state : states) {
 				log.debug("Apply %s templates to %s state.", templates.size(), state.getID());
@@ -206,19 +445,72 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 				factorPool.clear();
 
 				List<StateT> stateAsList = Arrays.asList(state);
-				for (AbstractTemplate<InstanceT, StateT, ?> t : templates) {
-					applyTemplate(t, stateAsList, factorPool, instance);
+				if (scheduler != null && multiThreaded) {
+					applyTemplatesScheduled(stateAsList, factorPool, instance, Collections.emptyMap());
+				} else {
+					for (AbstractTemplate<InstanceT, StateT, ?> t : templates) {
+						applyTemplate(t, stateAsList, factorPool, instance, Collections.emptyMap());
+					}
 				}
+				state.getFactorGraph().setComplete(true);
+				long start = scoringTimer.start();
 				scorer.score(stateAsList, multiThreaded);
+				scoringTimer.stop(start);
 			}
 		} else {
-			applyToStates(states, factorPool, instance);
-			scorer.score(states, multiThreaded);
+			applyToStatesInContext(states, factorPool, instance);
+			long start = scoringTimer.start();
+			if (deltaScoring && scorer instanceof AbstractAdditiveScorer) {
+				((AbstractAdditiveScorer) scorer).scoreIncrementally(states, multiThreaded);
+			} else {
+				scorer.score(states, multiThreaded);
+			}
+			scoringTimer.stop(start);
 		}
 	}
 
+	/**
+	 * Evicts factors from the given pool if it exceeds its capacity (see
+	 * <b>FactorPool.cleanUp()</b>). The samplers call this method at the end
+	 * of each sampling step, i.e. after the learner used the factors of the
+	 * scored states, since the factors of a step must not be evicted before.
+	 * 
+	 * @param factorPool
+	 */
+	public void cleanUpFactorPool(FactorPool factorPool) {
+		getMetrics().counter("model.factors.evicted").add(factorPool.cleanUp());
+	}
+
+	/**
+	 * Applies all templates to the given states and computes the factors that
+	 * are not in the factor pool yet. States that report their changed
+	 * variables (see <b>AbstractState.markAsChanged()</b>) and whose parent
+	 * state was already scored reuse the patterns of the parent that do not
+	 * read any changed variable, if the template supports this (see
+	 * <b>AbstractTemplate.generateFactorPatterns(state,
+	 * changedVariables)</b>).
+	 * 
+	 * @param states
+	 * @param factorPool
+	 * @param instance
+	 */
 	public void applyToStates(List<StateT> states, FactorPool factorPool, InstanceT instance) {
+		if (multiThreaded) {
+			getExecutionContext().run(() -> applyToStatesInContext(states, factorPool, instance));
+		} else {
+			applyToStatesInContext(states, factorPool, instance);
+		}
+	}
+
+	private void applyToStatesInContext(List<StateT> states, FactorPool factorPool, InstanceT instance) {
 		log.debug("Apply %s templates to %s states.", templates.size(), states.size());
+		Timer applyTimer = getMetrics().timer("model.apply");
+		long start = applyTimer.start();
+		/*
+		 * The patterns of the parent states have to be collected before the
+		 * factor graphs are cleared, since parents may be scored again.
+		 */
+		Map<FactorGraph, ParentPatterns> parentPatterns = collectParentPatterns(states);
 		for (StateT state : states) {
 			state.getFactorGraph().clear();
 		}
@@ -226,30 +518,136 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 			factorPool.clear();
 		}
 
-		Stream<AbstractTemplate<InstanceT, StateT, ?>> stream = Utils.getStream(templates, multiThreaded);
-		stream.forEach(t -> {
-			applyTemplate(t, states, factorPool, instance);
-		});
+		if (scheduler != null && multiThreaded) {
+			applyTemplatesScheduled(states, factorPool, instance, parentPatterns);
+		} else {
+			Stream<AbstractTemplate<InstanceT, StateT, ?>> stream = Utils.getStream(templates, multiThreaded);
+			stream.forEach(t -> {
+				applyTemplate(t, states, factorPool, instance, parentPatterns);
+			});
+		}
+		for (StateT state : states) {
+			state.getFactorGraph().setComplete(true);
+		}
+		applyTimer.stop(start);
+	}
+
+	private Map<FactorGraph, ParentPatterns> collectParentPatterns(List<StateT> states) {
+		Map<FactorGraph, ParentPatterns> parentPatterns = new IdentityHashMap<>();
+		for (StateT state : states) {
+			FactorGraph parent = state.getFactorGraph().getParent();
+			if (parent != null && parent.isComplete() && state.getChangedVariableIDs() != null) {
+				parentPatterns.computeIfAbsent(parent, ParentPatterns::new);
+			}
+		}
+		return parentPatterns;
+	}
+
+	/**
+	 * Applies all templates to the given states with the scheduler in three
+	 * phases: the generation of the patterns of all (template, chunk of
+	 * states) units, the selection of the new patterns of each template and
+	 * the computation of the factors of all (template, chunk of patterns)
+	 * units.
+	 */
+	private void applyTemplatesScheduled(List<StateT> states, FactorPool factorPool, InstanceT instance,
+			Map<FactorGraph, ParentPatterns> parentPatterns) {
+		Map<AbstractTemplate<InstanceT, StateT, ?>, List<StateT>> statesByTemplate = new IdentityHashMap<>();
+		Map<AbstractTemplate<InstanceT, StateT, ?>, Queue<PatternBuffer<?>>> buffersByTemplate =
+				new IdentityHashMap<>();
+		for (AbstractTemplate<InstanceT, StateT, ?> t : templates) {
+			statesByTemplate.put(t, states);
+			buffersByTemplate.put(t, new ConcurrentLinkedQueue<>());
+		}
+		scheduler.run(Phase.GENERATION, statesByTemplate, (t, chunk) -> buffersByTemplate.get(t)
+				.add(generatePatternsAndAddToStates(t, chunk, factorPool, parentPatterns, new PatternBuffer<>())));
+
+		Map<AbstractTemplate<InstanceT, StateT, ?>, List<FactorPattern>> patternsByTemplate = new ConcurrentHashMap<>();
+		List<Runnable> selections = new ArrayList<>();
+		for (AbstractTemplate<InstanceT, StateT, ?> t : templates) {
+			selections.add(() -> patternsByTemplate.put(t,
+					selectPatternsToCompute(t, buffersByTemplate.get(t), factorPool, parentPatterns)));
+		}
+		scheduler.runAll(selections);
+
+		scheduler.run(Phase.COMPUTATION, patternsByTemplate,
+				(t, chunk) -> computeAndAddFactors(t, chunk, factorPool, instance));
 	}
 
-	private <FactorPatternT extends FactorPattern> Set<FactorPatternT> applyTemplate(
+	private <FactorPatternT extends FactorPattern> PatternBuffer<FactorPatternT> generatePatternsAndAddToStates(
 			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, List<StateT> states, FactorPool factorPool,
-			InstanceT instance) {
+			Map<FactorGraph, ParentPatterns> parentPatterns, PatternBuffer<FactorPatternT> buffer) {
+		for (StateT state : states) {
+			generatePatternsAndAddToState(t, state, factorPool, parentPatterns, buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Merges the buffers of the given template and selects the patterns for
+	 * which a factor needs to be computed.
+	 */
+	@SuppressWarnings("unchecked")
+	private <FactorPatternT extends FactorPattern> List<FactorPattern> selectPatternsToCompute(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, Collection<PatternBuffer<?>> buffers,
+			FactorPool factorPool, Map<FactorGraph, ParentPatterns> parentPatterns) {
+		PatternBuffer<FactorPatternT> allGeneratedPatternsForTemplate = new PatternBuffer<>();
+		for (PatternBuffer<?> buffer : buffers) {
+			allGeneratedPatternsForTemplate.addAll((PatternBuffer<FactorPatternT>) buffer);
+		}
+		for (ParentPatterns parent : parentPatterns.values()) {
+			parent.collectReusedPatterns(t, allGeneratedPatternsForTemplate, factorPool);
+		}
+		return new ArrayList<>(selectPatternsToCompute(t, allGeneratedPatternsForTemplate.patterns, factorPool));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <FactorPatternT extends FactorPattern> void computeAndAddFactors(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, List<FactorPattern> patterns,
+			FactorPool factorPool, InstanceT instance) {
+		List<Factor<FactorPatternT>> factors = new ArrayList<>(patterns.size());
+		for (FactorPattern p : patterns) {
+			Factor<FactorPatternT> f = new Factor<>((FactorPatternT) p);
+			t.computeFactor(instance, f);
+			factors.add(f);
+		}
+		factorPool.addFactors(factors);
+	}
+
+	private <FactorPatternT extends FactorPattern> Collection<FactorPatternT> applyTemplate(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, List<StateT> states, FactorPool factorPool,
+			InstanceT instance, Map<FactorGraph, ParentPatterns> parentPatterns) {
 		log.debug("Apply template \"%s\" to %s states.", t.getClass().getSimpleName(), states.size());
 		/*
 		 * Collect all pattern of all states to which this template can be
 		 * applied (in parallel).
 		 */
-		Set<FactorPatternT> allGeneratedPatternsForTemplate = generatePatternsAndAddToStates(t, states);
+		Collection<FactorPatternT> allGeneratedPatternsForTemplate = generatePatternsAndAddToStates(t, states,
+				factorPool, parentPatterns);
 
-		log.debug("%s possible Factors for template %s", allGeneratedPatternsForTemplate.size(),
-				t.getClass().getSimpleName());
+		Collection<FactorPatternT> patternsToCompute = selectPatternsToCompute(t, allGeneratedPatternsForTemplate,
+				factorPool);
 
 		/*
-		 * Select only new patterns (or all if forced) for computation.
+		 * Compute all selected factors (in parallel).
 		 */
+		Set<Factor<FactorPatternT>> newFactors = computeNewFactors(t, patternsToCompute, instance);
+
+		factorPool.addFactors(newFactors);
+		return allGeneratedPatternsForTemplate;
+	}
+
+	/**
+	 * Selects the patterns of the given template for which a factor needs to
+	 * be computed: only new patterns or all if forced.
+	 */
+	private <FactorPatternT extends FactorPattern> Collection<FactorPatternT> selectPatternsToCompute(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t,
+			Collection<FactorPatternT> allGeneratedPatternsForTemplate, FactorPool factorPool) {
+		log.debug("%s possible Factors for template %s", allGeneratedPatternsForTemplate.size(),
+				t.getClass().getSimpleName());
 		log.debug("Compute %s factors ...", forceFactorComputation ? "ALL" : "NEW");
-		Set<FactorPatternT> patternsToCompute = null;
+		Collection<FactorPatternT> patternsToCompute = null;
 		if (forceFactorComputation) {
 			patternsToCompute = allGeneratedPatternsForTemplate;
 		} else {
@@ -257,43 +655,240 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 			 * Extract only the ones which are not already associate with a
 			 * factor.
 			 */
-			Set<FactorPatternT> newPatternsForTemplate = factorPool
+			List<FactorPatternT> newPatternsForTemplate = factorPool
 					.extractNewFactorPatterns(allGeneratedPatternsForTemplate);
 			log.debug("%s new Factors for template %s", newPatternsForTemplate.size(), t.getClass().getSimpleName());
 
 			patternsToCompute = newPatternsForTemplate;
 		}
+		getMetrics().counter("model.factors.computed").add(patternsToCompute.size());
+		getMetrics().counter("model.factors.reused")
+				.add(allGeneratedPatternsForTemplate.size() - patternsToCompute.size());
+		return patternsToCompute;
+	}
+
+	/**
+	 * Generates the factor patterns of the given template for all states,
+	 * interns them in the factor pool and adds them to the factor graphs of
+	 * the states. Returns the distinct (interned) patterns of all states.
+	 * Each worker collects the distinct patterns of its states in its own
+	 * buffer and the buffers are merged afterwards, so that the workers do not
+	 * contend on a shared set. Patterns that a state reuses from its parent
+	 * are collected only once per parent.
+	 */
+	private <FactorPatternT extends FactorPattern> Collection<FactorPatternT> generatePatternsAndAddToStates(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, List<StateT> states, FactorPool factorPool,
+			Map<FactorGraph, ParentPatterns> parentPatterns) {
+		Stream<StateT> stream = Utils.getStream(states, multiThreaded);
+		PatternBuffer<FactorPatternT> allGeneratedPatternsForTemplate = stream.collect(PatternBuffer::new,
+				(buffer, state) -> generatePatternsAndAddToState(t, state, factorPool, parentPatterns, buffer),
+				PatternBuffer::addAll);
+		for (ParentPatterns parent : parentPatterns.values()) {
+			parent.collectReusedPatterns(t, allGeneratedPatternsForTemplate, factorPool);
+		}
+		return allGeneratedPatternsForTemplate.patterns;
+	}
 
-		/*
-		 * Compute all selected factors (in parallel).
+	/**
+	 * Generates the factor patterns of the given template for the given
+	 * state, interns them in the factor pool and adds them to the factor graph
+	 * of the state. The generated patterns are collected in the given buffer.
+	 * Patterns that are reused from the parent state are not collected, since
+	 * they are collected once per parent instead of once per state.
+	 */
+	private <FactorPatternT extends FactorPattern> void generatePatternsAndAddToState(
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, StateT state, FactorPool factorPool,
+			Map<FactorGraph, ParentPatterns> parentPatterns, PatternBuffer<FactorPatternT> buffer) {
+		log.trace("Apply template \"%s\" to state %s. Force recomputation: %s", t.getClass().getSimpleName(),
+				state.getID(), forceFactorComputation);
+		log.trace("%s", state);
+		List<FactorPatternT> reusedPatternsForState = new ArrayList<>();
+		List<FactorPatternT> generatedPatternsForState = null;
+		ParentPatterns parent = parentPatterns.get(state.getFactorGraph().getParent());
+		if (parent != null) {
+			generatedPatternsForState = parent.derivePatterns(t, state, reusedPatternsForState);
+		}
+		if (generatedPatternsForState == null) {
+			generatedPatternsForState = t.generateFactorPatterns(state);
+		}
+		log.trace("%s possible Factors for state %s",
+				reusedPatternsForState.size() + generatedPatternsForState.size(), state.getID());
+		List<FactorPatternT> internedPatternsForState = new ArrayList<>(
+				reusedPatternsForState.size() + generatedPatternsForState.size());
+		for (FactorPatternT reusedPattern : reusedPatternsForState) {
+			internedPatternsForState.add(factorPool.intern(reusedPattern));
+		}
+		for (FactorPatternT generatedPattern : generatedPatternsForState) {
+			FactorPatternT factorPattern = factorPool.intern(generatedPattern);
+			internedPatternsForState.add(factorPattern);
+			buffer.add(factorPattern);
+		}
+		getMetrics().counter("model.patterns.reused").add(reusedPatternsForState.size());
+
+		FactorGraph factorGraph = state.getFactorGraph();
+		factorGraph.addFactorPatterns(internedPatternsForState);
+	}
+
+	/**
+	 * The patterns of a parent state (i.e. a state from which the scored
+	 * states were derived) by their template, indexed by the IDs of the
+	 * variables they read.
+	 */
+	private static class ParentPatterns {
+		private final Map<AbstractTemplate<?, ?, ?>, TemplatePatterns> patternsByTemplate = new IdentityHashMap<>();
+
+		private ParentPatterns(FactorGraph factorGraph) {
+			for (FactorPattern factorPattern : factorGraph.getFactorPatterns()) {
+				patternsByTemplate.computeIfAbsent(factorPattern.getTemplate(), t -> new TemplatePatterns())
+						.add(factorPattern);
+			}
+		}
+
+		/**
+		 * Adds the patterns of the parent that do not read any of the changed
+		 * variables of the given state to <i>reusedPatterns</i> and returns
+		 * the patterns that the template generates for the changed variables,
+		 * or returns null if the patterns can not be derived from the parent.
 		 */
-		Set<Factor<FactorPatternT>> newFactors = computeNewFactors(t, patternsToCompute, instance);
+		@SuppressWarnings("unchecked")
+		private <FactorPatternT extends FactorPattern> List<FactorPatternT> derivePatterns(
+				AbstractTemplate<?, ?, FactorPatternT> t, AbstractState<?> state,
+				List<FactorPatternT> reusedPatterns) {
+			TemplatePatterns templatePatterns = patternsByTemplate.get(t);
+			if (templatePatterns != null && templatePatterns.unknownVariables) {
+				return null;
+			}
+			List<FactorPatternT> changedPatterns = ((AbstractTemplate<?, AbstractState<?>, FactorPatternT>) t)
+					.generateFactorPatterns(state, state.getChangedVariables());
+			if (changedPatterns == null) {
+				return null;
+			}
+			if (templatePatterns == null) {
+				return changedPatterns;
+			}
+			BitSet affected = templatePatterns.findAffectedPatterns(state.getChangedVariableIDs());
+			List<FactorPattern> patterns = templatePatterns.patterns;
+			for (int i = affected.nextClearBit(0); i < patterns.size(); i = affected.nextClearBit(i + 1)) {
+				reusedPatterns.add((FactorPatternT) patterns.get(i));
+			}
+			templatePatterns.reused = true;
+			return changedPatterns;
+		}
 
-		factorPool.addFactors(newFactors);
-		return allGeneratedPatternsForTemplate;
+		/**
+		 * Adds the (interned) patterns of the given template to the buffer if
+		 * a state reused them.
+		 */
+		@SuppressWarnings("unchecked")
+		private <FactorPatternT extends FactorPattern> void collectReusedPatterns(
+				AbstractTemplate<?, ?, FactorPatternT> t, PatternBuffer<FactorPatternT> buffer,
+				FactorPool factorPool) {
+			TemplatePatterns templatePatterns = patternsByTemplate.get(t);
+			if (templatePatterns != null && templatePatterns.reused) {
+				for (FactorPattern factorPattern : templatePatterns.patterns) {
+					buffer.add(factorPool.intern((FactorPatternT) factorPattern));
+				}
+			}
+		}
 	}
 
-	private <FactorPatternT extends FactorPattern> Set<FactorPatternT> generatePatternsAndAddToStates(
-			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, List<StateT> states) {
-		Stream<StateT> stream = Utils.getStream(states, multiThreaded);
-		Set<FactorPatternT> allGeneratedPatternsForTemplate = ConcurrentHashMap.newKeySet();
-
-		stream.forEach(state -> {
-			log.trace("Apply template \"%s\" to state %s. Force recomputation: %s", t.getClass().getSimpleName(),
-					state.getID(), forceFactorComputation);
-			log.trace("%s", state);
-			List<FactorPatternT> generatedPatternsForState = t.generateFactorPatterns(state);
-			log.trace("%s possible Factors for state %s", generatedPatternsForState.size(), state.getID());
-
-			FactorGraph factorGraph = state.getFactorGraph();
-			factorGraph.addFactorPatterns(generatedPatternsForState);
-			allGeneratedPatternsForTemplate.addAll(generatedPatternsForState);
-		});
-		return allGeneratedPatternsForTemplate;
+	private static class TemplatePatterns {
+		private final List<FactorPattern> patterns = new ArrayList<>();
+		/**
+		 * The positions of the patterns by the IDs of the variables they read.
+		 */
+		private final Map<VariableID, List<Integer>> patternsByVariable = new HashMap<>();
+		/**
+		 * True if at least one pattern does not declare its variables.
+		 */
+		private boolean unknownVariables;
+		private volatile boolean reused;
+
+		private void add(FactorPattern factorPattern) {
+			Collection<VariableID> variableIDs = factorPattern.getVariableIDs();
+			if (variableIDs == null) {
+				unknownVariables = true;
+			} else {
+				for (VariableID variableID : variableIDs) {
+					patternsByVariable.computeIfAbsent(variableID, id -> new ArrayList<>(1)).add(patterns.size());
+				}
+			}
+			patterns.add(factorPattern);
+		}
+
+		private BitSet findAffectedPatterns(Collection<VariableID> changedVariableIDs) {
+			BitSet affected = new BitSet(patterns.size());
+			for (VariableID variableID : changedVariableIDs) {
+				List<Integer> positions = patternsByVariable.get(variableID);
+				if (positions != null) {
+					for (int position : positions) {
+						affected.set(position);
+					}
+				}
+			}
+			return affected;
+		}
+	}
+
+	/**
+	 * Collects distinct interned patterns. Since interned patterns are equal
+	 * if and only if they have the same id, the patterns are deduplicated with
+	 * an open addressing hash set of their ids.
+	 */
+	private static class PatternBuffer<FactorPatternT extends FactorPattern> {
+		private final List<FactorPatternT> patterns = new ArrayList<>();
+		/**
+		 * The ids + 1 of all patterns, 0 marks an empty slot.
+		 */
+		private int[] ids = new int[16];
+
+		private void add(FactorPatternT factorPattern) {
+			int id = factorPattern.getInternedID() + 1;
+			int mask = ids.length - 1;
+			int i = slot(id, mask);
+			while (ids[i] != 0) {
+				if (ids[i] == id) {
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			ids[i] = id;
+			patterns.add(factorPattern);
+			if (2 * patterns.size() > ids.length) {
+				rehash();
+			}
+		}
+
+		private void rehash() {
+			int[] oldIDs = ids;
+			ids = new int[2 * oldIDs.length];
+			int mask = ids.length - 1;
+			for (int id : oldIDs) {
+				if (id != 0) {
+					int i = slot(id, mask);
+					while (ids[i] != 0) {
+						i = (i + 1) & mask;
+					}
+					ids[i] = id;
+				}
+			}
+		}
+
+		private static int slot(int id, int mask) {
+			int h = id * 0x9E3779B9;
+			return (h ^ (h >>> 16)) & mask;
+		}
+
+		private void addAll(PatternBuffer<FactorPatternT> other) {
+			for (FactorPatternT factorPattern : other.patterns) {
+				add(factorPattern);
+			}
+		}
 	}
 
 	private <FactorPatternT extends FactorPattern> Set<Factor<FactorPatternT>> computeNewFactors(
-			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, Set<FactorPatternT> patterns, InstanceT instance) {
+			AbstractTemplate<InstanceT, StateT, FactorPatternT> t, Collection<FactorPatternT> patterns,
+			InstanceT instance) {
 
 		Stream<FactorPatternT> stream = Utils.getStream(patterns, multiThreaded);
 
@@ -313,7 +908,7 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 			builder.append(template.getClass().getSimpleName());
 			builder.append("\n");
 			builder.append("\t#Features: ");
-			builder.append(template.getWeights().getFeatureNames().size());
+			builder.append(template.getWeights().size());
 			builder.append("\n");
 		}
 		return builder.toString();
@@ -324,7 +919,7 @@ public class Model<InstanceT extends Instance, StateT extends AbstractState<Inst
 		for (AbstractTemplate<?, StateT, ?> template : templates) {
 			builder.append(template.getClass().getSimpleName());
 			builder.append(" (#Features: ");
-			builder.append(template.getWeights().getFeatureNames().size());
+			builder.append(template.getWeights().size());
 			builder.append(")");
 			builder.append("\n");
 			for (String weight : template.getWeights().getFeatureNames()) {
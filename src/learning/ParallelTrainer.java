@@ -0,0 +1,182 @@
+package learning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import corpus.LabeledInstance;
+import learning.callbacks.EpochCallback;
+import learning.callbacks.InstanceCallback;
+import learning.parallel.SynchronizationPolicies;
+import learning.parallel.SynchronizationPolicy;
+import metrics.Timer;
+import sampling.Initializer;
+import sampling.Sampler;
+import variables.AbstractState;
+
+public class ParallelTrainer extends Trainer {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	private final Model<?, ?> model;
+	private final int numberOfChains;
+	private final SynchronizationPolicy synchronizationPolicy;
+
+	/**
+	 * This trainer runs up to <i>numberOfChains</i> sampling chains for
+	 * different training instances concurrently on a bounded thread pool. All
+	 * chains share the given model (and learner and sampler). How the
+	 * concurrent weight updates are synchronized is defined by the
+	 * <i>synchronizationPolicy</i> (see SynchronizationPolicies). </br>
+	 * While training, the model itself is applied single threaded since the
+	 * chains already occupy the thread pool. Instance callbacks are called
+	 * from the worker threads, but never concurrently.
+	 *
+	 * @param model
+	 * @param numberOfChains
+	 * @param synchronizationPolicy
+	 */
+	public ParallelTrainer(Model<?, ?> model, int numberOfChains, SynchronizationPolicy synchronizationPolicy) {
+		super();
+		if (numberOfChains < 1) {
+			throw new IllegalArgumentException("At least one sampling chain is required.");
+		}
+		this.model = model;
+		this.numberOfChains = numberOfChains;
+		this.synchronizationPolicy = synchronizationPolicy;
+	}
+
+	/**
+	 * Creates a parallel trainer with one chain per available processor that
+	 * uses lock-free (Hogwild) weight updates.
+	 *
+	 * @param model
+	 */
+	public ParallelTrainer(Model<?, ?> model) {
+		this(model, Runtime.getRuntime().availableProcessors(), SynchronizationPolicies.hogwild());
+	}
+
+	public int getNumberOfChains() {
+		return numberOfChains;
+	}
+
+	public SynchronizationPolicy getSynchronizationPolicy() {
+		return synchronizationPolicy;
+	}
+
+	/**
+	 * Trains the model like <b>Trainer.train()</b> but generates the sampling
+	 * chains for several instances concurrently. The instances of each epoch
+	 * are processed in rounds of <i>synchronizationPolicy.getRoundSize()</i>
+	 * instances. After each round, the weights are synchronized according to
+	 * the policy. The final states of the last epoch are returned in the order
+	 * in which the instances were processed.
+	 */
+	@Override
+	public <InstanceT extends LabeledInstance<ResultT>, StateT extends AbstractState<? super InstanceT>, ResultT> List<StateT> train(
+			Sampler<StateT, ResultT> sampler, Initializer<? super InstanceT, StateT> initializer,
+			Learner<StateT> learner, List<InstanceT> instances, int numberOfEpochs) {
+		Random random = new Random(100l);
+		List<StateT> finalStates = new ArrayList<>();
+		long startTime = System.currentTimeMillis();
+		log.info("#Epochs=%s, #Instances=%s, #Chains=%s", numberOfEpochs, instances.size(), numberOfChains);
+
+		AtomicInteger threadCounter = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfChains, r -> {
+			Thread thread = new Thread(r, "training-chain-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		boolean multiThreadedModel = model.isMultiThreaded();
+		model.setMultiThreaded(false);
+		synchronizationPolicy.beforeTraining(model);
+		try {
+			for (int e = 0; e < numberOfEpochs; e++) {
+				log.info("##############################");
+				log.info("Epoch: %s/%s", e + 1, numberOfEpochs);
+				log.info("##############################");
+				for (EpochCallback c : getEpochCallbacks()) {
+					c.onStartEpoch(this, e, numberOfEpochs, instances.size());
+				}
+				Collections.shuffle(instances, random);
+				int roundSize = synchronizationPolicy.getRoundSize(numberOfChains);
+				for (int start = 0; start < instances.size();) {
+					int end = (int) Math.min(instances.size(), (long) start + roundSize);
+					List<Callable<StateT>> chains = new ArrayList<>();
+					for (int i = start; i < end; i++) {
+						final int epoch = e;
+						final int index = i;
+						chains.add(() -> trainInstance(sampler, initializer, learner, instances, index, epoch,
+								numberOfEpochs));
+					}
+					for (Future<StateT> chain : executor.invokeAll(chains)) {
+						StateT finalState = chain.get();
+						if (e == numberOfEpochs - 1) {
+							finalStates.add(finalState);
+						}
+						finalState.resetFactorGraph();
+					}
+					synchronizationPolicy.synchronize(model);
+					start = end;
+				}
+				long stopTime = System.currentTimeMillis();
+				log.info("TrainingTime: %s (%s seconds)", (stopTime - startTime), (stopTime - startTime) / 1000);
+				log.info("##############################");
+				for (EpochCallback c : getEpochCallbacks()) {
+					c.onEndEpoch(this, e, numberOfEpochs, instances.size());
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Parallel training was interrupted.", ex);
+		} catch (ExecutionException ex) {
+			throw new IllegalStateException("A sampling chain failed.", ex.getCause());
+		} finally {
+			executor.shutdownNow();
+			synchronizationPolicy.afterTraining(model);
+			model.setMultiThreaded(multiThreadedModel);
+		}
+		return finalStates;
+	}
+
+	private <InstanceT extends LabeledInstance<ResultT>, StateT extends AbstractState<? super InstanceT>, ResultT> StateT trainInstance(
+			Sampler<StateT, ResultT> sampler, Initializer<? super InstanceT, StateT> initializer,
+			Learner<StateT> learner, List<InstanceT> instances, int i, int e, int numberOfEpochs) {
+		InstanceT instance = instances.get(i);
+		ResultT goldResult = instance.getGoldResult();
+		log.info("Epoch: %s/%s; Instance: %s/%s", e + 1, numberOfEpochs, i + 1, instances.size());
+		List<InstanceCallback> instanceCallbacks = getDocumentCallbacks();
+		synchronized (instanceCallbacks) {
+			for (InstanceCallback c : instanceCallbacks) {
+				c.onStartInstance(this, instance, i, instances.size(), e, numberOfEpochs);
+			}
+		}
+
+		Timer instanceTimer = getMetrics().timer("trainer.train.instance");
+		long instanceStart = instanceTimer.start();
+		StateT initialState = initializer.getInitialState(instance);
+		attachSharedFactorPool(initialState, instance);
+		List<StateT> generatedChain = sampler.generateChain(initialState, goldResult, learner);
+		StateT finalState = generatedChain.get(generatedChain.size() - 1);
+		instanceTimer.stop(instanceStart);
+
+		log.info("Instance: %s/%s; Gold Result: %s; Final State: %s", i + 1, instances.size(), goldResult,
+				finalState);
+		synchronized (instanceCallbacks) {
+			for (InstanceCallback c : instanceCallbacks) {
+				c.onEndInstance(this, instance, i, finalState, instances.size(), e, numberOfEpochs);
+			}
+		}
+		return finalState;
+	}
+}
@@ -0,0 +1,211 @@
+package learning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the weights of a template from a text file with one tab separated
+ * feature name and value per line (as written by <b>Model.saveModelToFile()</b>
+ * with <i>binaryModelFormat</i> disabled). Large files are split into byte
+ * ranges (chunks) that are parsed concurrently. A chunk contains all lines
+ * that start within its byte range. The parsed weights of all chunks are
+ * merged in the order of the file, so that the result is the same as if the
+ * file was read line by line.
+ */
+public class TextWeightsReader {
+
+	/**
+	 * The default size of a chunk in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final int chunkSize;
+	private final boolean parallel;
+	private final Charset charset = Charset.defaultCharset();
+
+	/**
+	 * Creates a reader that splits files into chunks of <i>chunkSize</i> bytes
+	 * and parses these chunks concurrently if <i>parallel</i> is true. The
+	 * chunks are parsed in a parallel stream, i.e. in the pool of the calling
+	 * thread (e.g. of an ExecutionContext, see <b>ExecutionContext.run()</b>).
+	 *
+	 * @param chunkSize
+	 * @param parallel
+	 */
+	public TextWeightsReader(int chunkSize, boolean parallel) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("The chunk size must be positive.");
+		}
+		this.chunkSize = chunkSize;
+		this.parallel = parallel;
+	}
+
+	public TextWeightsReader(boolean parallel) {
+		this(DEFAULT_CHUNK_SIZE, parallel);
+	}
+
+	private static class Chunk {
+		private int[] features = new int[16];
+		private double[] values = new double[16];
+		private int size = 0;
+
+		private void add(int feature, double value) {
+			if (size == features.length) {
+				features = Arrays.copyOf(features, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			features[size] = feature;
+			values[size] = value;
+			size++;
+		}
+	}
+
+	/**
+	 * Reads the weights from the given file and sets them in the given vector.
+	 * If the vector is an empty sparse Vector, it is replaced by a vector that
+	 * is pre-sized to the number of read weights. Thus, the returned vector
+	 * should be used as the new weights. The number of parsed bytes is
+	 * reported to the <i>progress</i> consumer (possibly from several threads)
+	 * whenever a buffer of a chunk was parsed.
+	 *
+	 * @param file
+	 * @param weights
+	 * @param progress
+	 * @return
+	 * @throws IOException
+	 */
+	public Vector read(File file, Vector weights, LongConsumer progress) throws IOException {
+		long length = file.length();
+		int numberOfChunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+		IntStream chunkIndices = IntStream.range(0, numberOfChunks);
+		if (parallel) {
+			chunkIndices = chunkIndices.parallel();
+		}
+		List<Chunk> chunks;
+		try {
+			chunks = chunkIndices.mapToObj(i -> {
+				try {
+					return readChunk(file, (long) i * chunkSize, Math.min(length, (long) (i + 1) * chunkSize),
+							progress);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		int numberOfWeights = 0;
+		for (Chunk chunk : chunks) {
+			numberOfWeights += chunk.size;
+		}
+		if (weights.getClass() == Vector.class && weights.size() == 0) {
+			weights = new Vector(numberOfWeights);
+		}
+		for (Chunk chunk : chunks) {
+			for (int i = 0; i < chunk.size; i++) {
+				weights.set(chunk.features[i], chunk.values[i]);
+			}
+		}
+		return weights;
+	}
+
+	private Chunk readChunk(File file, long start, long end, LongConsumer progress) throws IOException {
+		FeatureDictionary dictionary = FeatureDictionary.getInstance();
+		Chunk chunk = new Chunk();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(256, end - start + 1)));
+			byte[] line = new byte[256];
+			int lineLength = 0;
+			/*
+			 * A line that starts before this chunk belongs to the previous
+			 * chunk. Thus, we start one byte early and skip everything up to
+			 * the first line break.
+			 */
+			long position = start == 0 ? 0 : start - 1;
+			boolean skipLine = start > 0;
+			long lineStart = start;
+			long reported = start;
+			while (lineStart < end || lineLength > 0 || skipLine) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					break;
+				}
+				byte[] bytes = buffer.array();
+				for (int i = 0; i < read; i++, position++) {
+					byte b = bytes[i];
+					if (skipLine) {
+						if (b == '\n') {
+							skipLine = false;
+							lineStart = position + 1;
+							if (lineStart >= end) {
+								break;
+							}
+						}
+					} else if (b == '\n') {
+						parseLine(line, lineLength, dictionary, chunk, file);
+						lineLength = 0;
+						lineStart = position + 1;
+						if (lineStart >= end) {
+							break;
+						}
+					} else {
+						if (lineLength == line.length) {
+							line = Arrays.copyOf(line, 2 * lineLength);
+						}
+						line[lineLength++] = b;
+					}
+				}
+				if (lineStart >= end && lineLength == 0 && !skipLine) {
+					break;
+				}
+				long parsed = Math.min(position, end) - reported;
+				if (parsed > 0) {
+					progress.accept(parsed);
+					reported += parsed;
+				}
+			}
+			if (lineLength > 0) {
+				parseLine(line, lineLength, dictionary, chunk, file);
+			}
+			if (end > reported) {
+				progress.accept(end - reported);
+			}
+		}
+		return chunk;
+	}
+
+	private void parseLine(byte[] line, int length, FeatureDictionary dictionary, Chunk chunk, File file)
+			throws IOException {
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		if (length == 0) {
+			return;
+		}
+		int tab = 0;
+		while (tab < length && line[tab] != '\t') {
+			tab++;
+		}
+		if (tab == length) {
+			throw new IOException(
+					String.format("Malformed line in weights file %s: %s", file, new String(line, 0, length, charset)));
+		}
+		String featureName = new String(line, 0, tab, charset);
+		double value = Double.parseDouble(new String(line, tab + 1, length - tab - 1, charset));
+		chunk.add(dictionary.getIndex(featureName), value);
+	}
+}
@@ -1,17 +1,30 @@
 package learning;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import corpus.Instance;
 import corpus.LabeledInstance;
+import factors.FactorPool;
 import learning.callbacks.EpochCallback;
 import learning.callbacks.InstanceCallback;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import sampling.Initializer;
 import sampling.Sampler;
 import variables.AbstractState;
@@ -33,6 +46,55 @@ public class Trainer {
 
 	private List<InstanceCallback> instanceCallbacks = new ArrayList<>();
 	private List<EpochCallback> epochCallbacks = new ArrayList<>();
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+	private FactorPool sharedFactorPool;
+
+	/**
+	 * Returns the registry in which the time spent on each instance is
+	 * recorded (timers <i>trainer.train.instance</i>,
+	 * <i>trainer.test.instance</i> and <i>trainer.predict.instance</i>).
+	 * 
+	 * @return
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	public FactorPool getSharedFactorPool() {
+		return sharedFactorPool;
+	}
+
+	/**
+	 * Sets a factor pool that is shared by the sampling chains of all
+	 * instances and epochs, so that the factors of an instance are not
+	 * recomputed in later epochs. The initial state of each instance gets its
+	 * own view on this pool (see FactorPool.forInstance()). Typically, a pool
+	 * with a bounded capacity is used here. If no shared pool is set (the
+	 * default), each chain uses the pool of its initial state which is
+	 * discarded after the chain.
+	 * 
+	 * @param sharedFactorPool
+	 */
+	public void setSharedFactorPool(FactorPool sharedFactorPool) {
+		this.sharedFactorPool = sharedFactorPool;
+	}
+
+	protected void attachSharedFactorPool(AbstractState<?> initialState, Instance instance) {
+		if (sharedFactorPool != null) {
+			initialState.getFactorGraph().setFactorPool(sharedFactorPool.forInstance(instance));
+		}
+	}
+
+	protected void releaseFactors(AbstractState<?> finalState) {
+		finalState.getFactorGraph().clear();
+		if (sharedFactorPool == null) {
+			finalState.getFactorGraph().getFactorPool().clear();
+		}
+	}
 
 	public List<InstanceCallback> getDocumentCallbacks() {
 		return instanceCallbacks;
@@ -111,9 +173,13 @@ public class Trainer {
 					c.onStartInstance(this, instance, i, instances.size(), e, numberOfEpochs);
 				}
 
+				Timer instanceTimer = metrics.timer("trainer.train.instance");
+				long instanceStart = instanceTimer.start();
 				StateT initialState = initializer.getInitialState(instance);
+				attachSharedFactorPool(initialState, instance);
 				List<StateT> generatedChain = sampler.generateChain(initialState, goldResult, learner);
 				StateT finalState = generatedChain.get(generatedChain.size() - 1);
+				instanceTimer.stop(instanceStart);
 				long stopTime = System.currentTimeMillis();
 
 				log.info("++++++++++++++++");
@@ -175,12 +241,15 @@ public class Trainer {
 				c.onStartInstance(this, document, d, documents.size(), 1, 1);
 			}
 
+			Timer instanceTimer = metrics.timer("trainer.test.instance");
+			long instanceStart = instanceTimer.start();
 			StateT initialState = initializer.getInitialState(document);
+			attachSharedFactorPool(initialState, document);
 			List<StateT> generatedChain = sampler.generateChain(initialState);
 			StateT finalState = generatedChain.get(generatedChain.size() - 1);
+			instanceTimer.stop(instanceStart);
 
-			finalState.getFactorGraph().clear();
-			finalState.getFactorGraph().getFactorPool().clear();
+			releaseFactors(finalState);
 			finalStates.add(finalState);
 			log.info("++++++++++++++++");
 			log.info("Gold Result:   %s", document.getGoldResult());
@@ -216,12 +285,7 @@ public class Trainer {
 			log.info("Document: %s/%s", d + 1, documents.size());
 			log.info("Content   : %s", document);
 			log.info("===========================");
-			StateT initialState = initializer.getInitialState(document);
-			List<StateT> generatedChain = sampler.generateChain(initialState);
-			StateT finalState = generatedChain.get(generatedChain.size() - 1);
-
-			finalState.getFactorGraph().clear();
-			finalState.getFactorGraph().getFactorPool().clear();
+			StateT finalState = predictInstance(sampler, initializer, document);
 			finalStates.add(finalState);
 			log.info("++++++++++++++++");
 			log.info("Final State:  %s", finalState);
@@ -230,4 +294,107 @@ public class Trainer {
 		return finalStates;
 	}
 
+	/**
+	 * Predicts the final states for the given instances like <b>predict</b>,
+	 * but generates the sampling chains of up to <i>parallelism</i> instances
+	 * concurrently on a work-stealing thread pool. Each chain uses the factor
+	 * pool of its own initial state, so that no factors are shared between
+	 * threads. The returned future completes with the final states in the
+	 * order of the given instances, or exceptionally if any chain failed. The
+	 * thread pool is shut down once all chains finished.
+	 * 
+	 * @param sampler
+	 * @param initializer
+	 * @param documents
+	 * @param parallelism
+	 * @return
+	 */
+	public <StateT extends AbstractState<? super InstanceT>, InstanceT extends Instance> CompletableFuture<List<StateT>> predict(
+			Sampler<StateT, ?> sampler, Initializer<? super InstanceT, StateT> initializer, List<InstanceT> documents,
+			int parallelism) {
+		log.info("Predict %s documents with parallelism %s ...", documents.size(), parallelism);
+		ExecutorService executor = Executors.newWorkStealingPool(parallelism);
+		List<CompletableFuture<StateT>> futures = new ArrayList<>(documents.size());
+		for (int d = 0; d < documents.size(); d++) {
+			InstanceT document = documents.get(d);
+			int index = d;
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				log.debug("Document: %s/%s", index + 1, documents.size());
+				log.debug("Content   : %s", document);
+				StateT finalState = predictInstance(sampler, initializer, document);
+				log.debug("Final State:  %s", finalState);
+				return finalState;
+			}, executor));
+		}
+		CompletableFuture<Void> allDone = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+		allDone.whenComplete((v, e) -> executor.shutdown());
+		return allDone.thenApply(v -> futures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Predicts the final states for a (possibly unbounded) sequence of
+	 * instances and passes them to the given <i>sink</i>. The instances are
+	 * consumed lazily from the iterator and processed by <i>parallelism</i>
+	 * worker threads. At most <i>maxInFlight</i> instances are read but not
+	 * yet delivered to the sink at any time, so that the memory consumption
+	 * does not depend on the number of instances: if the sink or the workers
+	 * are slower than the source, no further instances are read until a
+	 * result was delivered (backpressure). The final states are passed to the
+	 * sink in the order of the instances, always from the calling thread.
+	 * Returns the number of processed instances.
+	 * 
+	 * @param sampler
+	 * @param initializer
+	 * @param instances
+	 * @param parallelism
+	 * @param maxInFlight
+	 * @param sink
+	 * @return
+	 */
+	public <StateT extends AbstractState<? super InstanceT>, InstanceT extends Instance> long predict(
+			Sampler<StateT, ?> sampler, Initializer<? super InstanceT, StateT> initializer,
+			Iterator<? extends InstanceT> instances, int parallelism, int maxInFlight, Consumer<? super StateT> sink) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one instance needs to be in flight.");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		Deque<Future<StateT>> inFlight = new ArrayDeque<>(maxInFlight);
+		long processed = 0;
+		try {
+			while (instances.hasNext() || !inFlight.isEmpty()) {
+				if (instances.hasNext() && inFlight.size() < maxInFlight) {
+					InstanceT instance = instances.next();
+					inFlight.add(executor.submit(() -> predictInstance(sampler, initializer, instance)));
+				} else {
+					sink.accept(inFlight.poll().get());
+					processed++;
+					if (processed % 1000 == 0) {
+						log.info("%s instances processed.", processed);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Prediction was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Prediction of an instance failed.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return processed;
+	}
+
+	private <StateT extends AbstractState<? super InstanceT>, InstanceT extends Instance> StateT predictInstance(
+			Sampler<StateT, ?> sampler, Initializer<? super InstanceT, StateT> initializer, InstanceT document) {
+		Timer instanceTimer = metrics.timer("trainer.predict.instance");
+		long instanceStart = instanceTimer.start();
+		StateT initialState = initializer.getInitialState(document);
+		attachSharedFactorPool(initialState, document);
+		List<StateT> generatedChain = sampler.generateChain(initialState);
+		StateT finalState = generatedChain.get(generatedChain.size() - 1);
+		instanceTimer.stop(instanceStart);
+
+		releaseFactors(finalState);
+		return finalState;
+	}
 }
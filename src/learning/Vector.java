@@ -1,34 +1,105 @@
 package learning;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 public class Vector implements Serializable {
 
 	private static final double DEFAULT_VALUE = 0;
-	private HashMap<String, Double> features;
+	private static final int DEFAULT_CAPACITY = 8;
+	private static final FeatureDictionary dictionary = FeatureDictionary.getInstance();
+
+	/**
+	 * Open addressing hash table (linear probing) of feature indices and their
+	 * values. A key stores the feature index + 1, so that 0 marks a free slot.
+	 */
+	private transient int[] keys;
+	private transient double[] values;
+	private transient int size;
+
+	/**
+	 * If not null, feature names are mapped to the buckets of this hasher
+	 * instead of their own index in the FeatureDictionary.
+	 */
+	private FeatureHasher featureHasher;
 
 	/**
 	 * This class basically wraps a Map of feature names and values.
 	 * Additionally, it provides convenience functions for some of the
-	 * computations during the learning process.
+	 * computations during the learning process. Internally, feature names are
+	 * replaced by their index in the global FeatureDictionary and values are
+	 * stored in primitive arrays.
 	 */
 	public Vector() {
-		features = new HashMap<String, Double>();
+		this(DEFAULT_CAPACITY / 2);
+	}
+
+	/**
+	 * Creates an empty vector with enough space for the expected number of
+	 * features.
+	 *
+	 * @param expectedNumberOfFeatures
+	 */
+	public Vector(int expectedNumberOfFeatures) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity < 2 * expectedNumberOfFeatures) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new double[capacity];
 	}
 
 	public Vector(Vector v) {
-		features = new HashMap<String, Double>(v.features);
+		featureHasher = v.featureHasher;
+		if (v.getClass() == Vector.class) {
+			keys = v.keys.clone();
+			values = v.values.clone();
+			size = v.size;
+		} else {
+			int capacity = DEFAULT_CAPACITY;
+			while (capacity < 2 * v.size()) {
+				capacity <<= 1;
+			}
+			keys = new int[capacity];
+			values = new double[capacity];
+			v.forEachFeature(this::set);
+		}
+	}
+
+	/**
+	 * Callback to iterate over all (non-zero) entries of a vector without
+	 * boxing.
+	 */
+	public interface FeatureConsumer {
+		public void accept(int feature, double value);
 	}
 
-	public void set(String feature, Double value) {
-		if (value != 0) {
-			features.put(feature, value);
+	/**
+	 * Sets the value of the given feature. A value of 0 removes the feature
+	 * from this vector. </br>
+	 * If this vector is hashed (see FeatureHasher), the value is added to the
+	 * bucket of the feature instead, so that colliding features do not
+	 * overwrite each other, and a value of 0 does not change this vector.
+	 *
+	 * @param feature
+	 * @param value
+	 */
+	public void set(String feature, double value) {
+		if (featureHasher != null) {
+			if (value != 0) {
+				int hash = featureHasher.hash(feature);
+				addToValue(featureHasher.getIndex(hash, feature), featureHasher.getSign(hash) * value);
+			}
+		} else if (value != 0) {
+			set(dictionary.getIndex(feature), value);
 		} else {
-			features.remove(feature);
+			remove(feature);
 		}
 	}
 
@@ -37,76 +108,302 @@ public class Vector implements Serializable {
 	}
 
 	public void remove(String feature) {
-		features.remove(feature);
+		int index = lookupIndex(feature);
+		if (index >= 0) {
+			remove(index);
+		}
 	}
 
 	/**
 	 * Returns the value of this feature. If this vector does not contain this
-	 * feature a default value is stored and returned for this feature.
-	 * 
+	 * feature the default value is returned.
+	 *
 	 * @param feature
 	 * @return
 	 */
 	public double getValueOfFeature(String feature) {
-		return features.getOrDefault(feature, DEFAULT_VALUE);
+		if (featureHasher != null) {
+			int hash = featureHasher.hash(feature);
+			int index = featureHasher.lookupIndex(hash);
+			return index >= 0 ? featureHasher.getSign(hash) * getValueOfFeature(index) : DEFAULT_VALUE;
+		}
+		int index = dictionary.lookupIndex(feature);
+		return index >= 0 ? getValueOfFeature(index) : DEFAULT_VALUE;
 	}
 
+	/**
+	 * Returns the index of the given feature (or its bucket, see
+	 * FeatureHasher) without adding it to the FeatureDictionary, or -1 if the
+	 * feature is unknown.
+	 */
+	private int lookupIndex(String feature) {
+		if (featureHasher != null) {
+			return featureHasher.lookupIndex(featureHasher.hash(feature));
+		}
+		return dictionary.lookupIndex(feature);
+	}
+
+	/**
+	 * Returns a copy of the features of this vector as a map of feature names
+	 * and values. Changes to the returned map are not reflected in this
+	 * vector.
+	 *
+	 * @return
+	 */
 	public Map<String, Double> getFeatures() {
+		Map<String, Double> features = new HashMap<>(size() * 2);
+		forEachFeature((feature, value) -> features.put(dictionary.getFeatureName(feature), value));
 		return features;
 	}
 
+	/**
+	 * Returns a copy of the names of all features of this vector.
+	 *
+	 * @return
+	 */
 	public Set<String> getFeatureNames() {
-		return features.keySet();
+		Set<String> names = new HashSet<>(size() * 2);
+		forEachFeature((feature, value) -> names.add(dictionary.getFeatureName(feature)));
+		return names;
 	}
 
 	public void addToValue(String feature, double alpha) {
-		double featureValue = getValueOfFeature(feature);
-		featureValue += alpha;
-		set(feature, featureValue);
+		if (featureHasher != null) {
+			int hash = featureHasher.hash(feature);
+			addToValue(featureHasher.getIndex(hash, feature), featureHasher.getSign(hash) * alpha);
+		} else {
+			addToValue(dictionary.getIndex(feature), alpha);
+		}
 	}
 
 	public boolean hasValueForFeature(String feature) {
-		return features.containsKey(feature);
+		int index = lookupIndex(feature);
+		return index >= 0 && hasValueForFeature(index);
 	}
 
 	/*
 	 * *********************
-	 * 
+	 *
+	 * INDEXED ACCESS
+	 *
+	 * *********************
+	 */
+
+	/**
+	 * Sets the value of the feature with the given index (see
+	 * FeatureDictionary). A value of 0 removes the feature from this vector.
+	 *
+	 * @param feature
+	 * @param value
+	 */
+	public void set(int feature, double value) {
+		if (value == 0) {
+			remove(feature);
+			return;
+		}
+		int key = feature + 1;
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length) {
+			rehash(keys.length << 1);
+		}
+	}
+
+	public double getValueOfFeature(int feature) {
+		int key = feature + 1;
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return DEFAULT_VALUE;
+	}
+
+	public boolean hasValueForFeature(int feature) {
+		return getValueOfFeature(feature) != DEFAULT_VALUE;
+	}
+
+	public void addToValue(int feature, double alpha) {
+		set(feature, getValueOfFeature(feature) + alpha);
+	}
+
+	public void remove(int feature) {
+		int key = feature + 1;
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		int k;
+		while ((k = keys[i]) != key) {
+			if (k == 0) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		/*
+		 * Backward shift deletion: move all following entries of this cluster
+		 * that would not be found anymore into the freed slot.
+		 */
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			k = keys[j];
+			if (k == 0) {
+				break;
+			}
+			int home = slot(k, mask);
+			boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!between) {
+				keys[i] = k;
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = 0;
+		values[i] = 0;
+		size--;
+	}
+
+	/**
+	 * Passes all features of this vector to the given consumer.
+	 *
+	 * @param consumer
+	 */
+	public void forEachFeature(FeatureConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				consumer.accept(keys[i] - 1, values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Creates a new, empty vector that uses the same storage backend as this
+	 * vector.
+	 *
+	 * @return
+	 */
+	public Vector newEmptyVector() {
+		Vector vector = new Vector();
+		vector.featureHasher = featureHasher;
+		return vector;
+	}
+
+	public FeatureHasher getFeatureHasher() {
+		return featureHasher;
+	}
+
+	/**
+	 * Enables feature hashing for the String based methods of this vector
+	 * (e.g. <b>set(String, double)</b>): feature names are mapped to the
+	 * buckets of the given hasher. Existing entries are not re-hashed. If
+	 * null, feature names are used as they are.
+	 *
+	 * @param featureHasher
+	 */
+	public void setFeatureHasher(FeatureHasher featureHasher) {
+		this.featureHasher = featureHasher;
+	}
+
+	/**
+	 * Returns true if all threads see the same values in this vector. Values
+	 * that are computed from a vector that is not shared across threads (see
+	 * ReplicatedVector) must not be cached for other threads.
+	 *
+	 * @return
+	 */
+	public boolean isSharedAcrossThreads() {
+		return true;
+	}
+
+	/**
+	 * Returns the number of (non-zero) features in this vector.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	private static int slot(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new int[capacity];
+		values = new double[capacity];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			int k = oldKeys[j];
+			if (k != 0) {
+				int i = slot(k, mask);
+				while (keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = k;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/*
+	 * *********************
+	 *
 	 * VECTOR ARITHMETICS
-	 * 
+	 *
 	 * *********************
 	 */
 	public double dotProduct(Vector weights) {
-		double result = 0;
-		Vector smaller = null;
-		Vector bigger = null;
-		if (getFeatureNames().size() < weights.getFeatureNames().size()) {
-			smaller = this;
-			bigger = weights;
+		if (size() < weights.size()) {
+			return sumOfProducts(weights);
 		} else {
-			smaller = weights;
-			bigger = this;
+			return weights.sumOfProducts(this);
 		}
+	}
 
-		for (Entry<String, Double> e : smaller.getFeatures().entrySet()) {
-			result += e.getValue() * bigger.getValueOfFeature(e.getKey());
+	/**
+	 * Computes the dot product by iterating over the features of this vector
+	 * and looking up the respective values in the other vector. Thus, this
+	 * vector should be the smaller one.
+	 * 
+	 * @param other
+	 * @return
+	 */
+	protected double sumOfProducts(Vector other) {
+		double result = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				result += values[i] * other.getValueOfFeature(keys[i] - 1);
+			}
 		}
 		return result;
 	}
 
 	public Vector mul(double f) {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), feature.getValue() * f);
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, value * f));
 		return result;
 	}
 
 	public Vector mul(Vector v) {
-		Vector result = new Vector();
 		Vector smaller = null;
 		Vector bigger = null;
-		if (getFeatureNames().size() < v.getFeatureNames().size()) {
+		if (size() < v.size()) {
 			smaller = this;
 			bigger = v;
 		} else {
@@ -114,95 +411,105 @@ public class Vector implements Serializable {
 			bigger = this;
 		}
 
-		for (Entry<String, Double> e : smaller.getFeatures().entrySet()) {
-			result.set(e.getKey(), e.getValue() * bigger.getValueOfFeature(e.getKey()));
-		}
+		Vector result = new Vector(smaller.size());
+		Vector other = bigger;
+		smaller.forEachFeature((feature, value) -> result.set(feature, value * other.getValueOfFeature(feature)));
 		return result;
 	}
 
 	public Vector div(double f) {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), feature.getValue() / f);
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, value / f));
 		return result;
 	}
 
 	public Vector div(Vector v) {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), feature.getValue() / v.getValueOfFeature(feature.getKey()));
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, value / v.getValueOfFeature(feature)));
 		return result;
 	}
 
 	public Vector sqrt() {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), Math.sqrt(feature.getValue()));
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, Math.sqrt(value)));
 		return result;
 	}
 
 	public Vector pow(double power) {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), Math.pow(feature.getValue(), power));
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, Math.pow(value, power)));
 		return result;
 	}
 
 	public Vector add(Vector v) {
 		Vector result = new Vector(this);
-		for (Entry<String, Double> feature : v.getFeatures().entrySet()) {
-			result.addToValue(feature.getKey(), feature.getValue());
-		}
+		result.addToValue(v);
 		return result;
 	}
 
 	public Vector add(double c) {
-		Vector result = new Vector();
-		for (Entry<String, Double> feature : features.entrySet()) {
-			result.set(feature.getKey(), feature.getValue() + c);
-		}
+		Vector result = new Vector(size());
+		forEachFeature((feature, value) -> result.set(feature, value + c));
 		return result;
 	}
 
 	public Vector sub(Vector v) {
 		Vector result = new Vector(this);
-		for (Entry<String, Double> feature : v.getFeatures().entrySet()) {
-			result.addToValue(feature.getKey(), -feature.getValue());
-		}
+		result.subtractFromValue(v);
 		return result;
 	}
 
 	public void addToValue(Vector v) {
-		for (Entry<String, Double> feature : v.getFeatures().entrySet()) {
-			addToValue(feature.getKey(), feature.getValue());
-		}
+		v.forEachFeature(this::addToValue);
 	}
 
 	public void subtractFromValue(Vector v) {
-		for (Entry<String, Double> feature : v.getFeatures().entrySet()) {
-			addToValue(feature.getKey(), -feature.getValue());
-		}
+		v.forEachFeature((feature, value) -> addToValue(feature, -value));
 	}
 
 	public void normalize() {
-		double length = 0;
-		for (Entry<String, Double> feature : features.entrySet()) {
-			length += Math.pow(feature.getValue(), 2);
-		}
-		length = Math.sqrt(length);
+		double length = Math.sqrt(dotProduct(this));
 		if (length > 0) {
-			for (Entry<String, Double> feature : features.entrySet()) {
-				set(feature.getKey(), feature.getValue() / length);
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != 0) {
+					values[i] /= length;
+				}
 			}
 		}
 	}
 
+	/*
+	 * Feature indices are only valid within the current JVM. Thus, a vector is
+	 * serialized with its feature names and re-indexed when it is read.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				out.writeObject(dictionary.getFeatureName(keys[i] - 1));
+				out.writeDouble(values[i]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int numberOfFeatures = in.readInt();
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity < 2 * numberOfFeatures) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new double[capacity];
+		for (int i = 0; i < numberOfFeatures; i++) {
+			String feature = (String) in.readObject();
+			set(dictionary.getIndex(feature), in.readDouble());
+		}
+	}
+
 	@Override
 	public String toString() {
-		return features.toString();
+		return getFeatures().toString();
 	}
 }
@@ -0,0 +1,20 @@
+package learning.callbacks;
+
+import learning.Model;
+
+/**
+ * Is notified about the progress of <b>Model.loadModelFromDir()</b>. Since
+ * the template files are loaded concurrently, <b>onProgress</b> may be called
+ * from several threads at the same time.
+ */
+public interface LoadingCallback {
+
+	default void onStartLoading(Model<?, ?> caller, int numberOfTemplateFiles, long totalBytes) {
+	}
+
+	default void onProgress(Model<?, ?> caller, long loadedBytes, long totalBytes) {
+	}
+
+	default void onEndLoading(Model<?, ?> caller, int numberOfTemplateFiles, long totalBytes) {
+	}
+}
@@ -1,5 +1,9 @@
 package learning.optimizer;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import learning.Vector;
 
 public class Adam implements Optimizer {
@@ -9,9 +13,27 @@ public class Adam implements Optimizer {
 	private double beta2 = 0.999;
 	private double epsilon = 10e-8;
 
-	private Vector m = new Vector();
-	private Vector v = new Vector();
-	private int t = 0;
+	/**
+	 * The moment estimates are kept separately for each parameter vector
+	 * (i.e. for each template) that is passed to this optimizer.
+	 */
+	private Map<Vector, Moments> moments = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static class Moments {
+		private final Vector m;
+		private final Vector v;
+		/**
+		 * The step at which each feature was updated the last time.
+		 */
+		private final Vector lastStep;
+		private int t = 0;
+
+		public Moments(Vector theta) {
+			this.m = theta.newEmptyVector();
+			this.v = theta.newEmptyVector();
+			this.lastStep = theta.newEmptyVector();
+		}
+	}
 
 	public Adam() {
 	}
@@ -29,33 +51,37 @@ public class Adam implements Optimizer {
 		this.epsilon = epsilon;
 	}
 
+	/**
+	 * Updates theta in place and returns it. Only the features that are
+	 * present in the gradient are touched (lazy Adam). The moments of a feature
+	 * that did not receive a gradient for some steps are decayed accordingly
+	 * when the feature is updated the next time.
+	 */
 	@Override
 	public Vector getUpdates(Vector theta, Vector gradient) {
-		t++;
-		Vector m_t = m.mul(beta1).add(gradient.mul(1 - beta1));
-		Vector v_t = v.mul(beta2).add(gradient.pow(2).mul(1 - beta2));
-
-		// Vector m_hat = m.div(1 - Math.pow(beta1, t));
-		// Vector v_hat = v.div(1 - Math.pow(beta2, t));
+		Moments state = moments.computeIfAbsent(theta, Moments::new);
+		int t;
+		synchronized (state) {
+			t = ++state.t;
+		}
 
 		double alpha_t = alpha * Math.sqrt(1 - Math.pow(beta2, t)) / (1 - Math.pow(beta1, t));
-		Vector nom = m_t.mul(alpha_t);
-		Vector denom = v_t.sqrt().add(epsilon);
-		Vector diff = nom.div(denom);
-		theta = theta.sub(diff);
-		
-//		System.out.println("Grad: " + gradient);
-//		System.out.println("m:    " + m);
-//		System.out.println("m_t:  " + m_t);
-//		System.out.println("v:    " + v);
-//		System.out.println("v_t:  " + v_t);
-//		System.out.println("alph: " + alpha_t);
-//		System.out.println("nom:  " + nom);
-//		System.out.println("deno: " + denom);
-//		System.out.println("Diff: " + diff);
-
-		m = m_t;
-		v = v_t;
+		gradient.forEachFeature((feature, g) -> {
+			int skippedSteps = t - 1 - (int) state.lastStep.getValueOfFeature(feature);
+			double m_t = state.m.getValueOfFeature(feature);
+			double v_t = state.v.getValueOfFeature(feature);
+			if (skippedSteps > 0) {
+				m_t *= Math.pow(beta1, skippedSteps);
+				v_t *= Math.pow(beta2, skippedSteps);
+			}
+			m_t = beta1 * m_t + (1 - beta1) * g;
+			v_t = beta2 * v_t + (1 - beta2) * g * g;
+
+			state.m.set(feature, m_t);
+			state.v.set(feature, v_t);
+			state.lastStep.set(feature, t);
+			theta.addToValue(feature, -alpha_t * m_t / (Math.sqrt(v_t) + epsilon));
+		});
 		return theta;
 	}
 
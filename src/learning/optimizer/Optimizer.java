@@ -4,5 +4,16 @@ import learning.Vector;
 
 public interface Optimizer {
 
+	/**
+	 * Applies one optimization step for the given gradient to the parameters
+	 * theta and returns the updated parameters. Implementations update theta
+	 * in place and only touch the features that are present in the (sparse)
+	 * gradient, so that the cost of a step does not depend on the total
+	 * number of parameters.
+	 * 
+	 * @param theta
+	 * @param gradient
+	 * @return
+	 */
 	public Vector getUpdates(Vector theta, Vector gradient);
 }
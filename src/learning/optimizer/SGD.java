@@ -1,5 +1,9 @@
 package learning.optimizer;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import learning.Vector;
 
 public class SGD implements Optimizer {
@@ -9,9 +13,25 @@ public class SGD implements Optimizer {
 	private double decay = 0.0;
 	private boolean nesterov = false;
 
-	private Vector m = new Vector();
-	private Vector v = new Vector();
-	private int t = 0;
+	/**
+	 * The velocities are kept separately for each parameter vector (i.e. for
+	 * each template) that is passed to this optimizer.
+	 */
+	private Map<Vector, Velocity> velocities = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static class Velocity {
+		private final Vector v;
+		/**
+		 * The step at which each feature was updated the last time.
+		 */
+		private final Vector lastStep;
+		private int t = 0;
+
+		public Velocity(Vector theta) {
+			this.v = theta.newEmptyVector();
+			this.lastStep = theta.newEmptyVector();
+		}
+	}
 
 	public SGD(double alpha, double momentum, double decay, boolean nesterov) {
 		super();
@@ -24,22 +44,40 @@ public class SGD implements Optimizer {
 	public SGD() {
 	}
 
+	/**
+	 * Updates theta in place and returns it. Only the features that are
+	 * present in the gradient are touched. When momentum is used, the velocity
+	 * of a feature that did not receive a gradient for some steps is decayed
+	 * accordingly when the feature is updated the next time.
+	 */
 	@Override
 	public Vector getUpdates(Vector theta, Vector gradient) {
-		t++;
+		Velocity state = velocities.computeIfAbsent(theta, Velocity::new);
+		int t;
+		synchronized (state) {
+			t = ++state.t;
+		}
 		double alpha_t = alpha * (1.0 / 1.0 + decay * t);
 		if (momentum == 0 && decay == 0 && !nesterov) {
 			// perform sparse updates
-			theta.subtractFromValue(gradient.mul(alpha_t));
+			gradient.forEachFeature((feature, g) -> theta.addToValue(feature, -alpha_t * g));
 		} else {
-			v = m.mul(momentum).sub(gradient.mul(alpha_t));
+			gradient.forEachFeature((feature, g) -> {
+				int skippedSteps = t - 1 - (int) state.lastStep.getValueOfFeature(feature);
+				double m = state.v.getValueOfFeature(feature);
+				if (skippedSteps > 0) {
+					m *= Math.pow(momentum, skippedSteps);
+				}
+				double v = momentum * m - alpha_t * g;
 
-			if (nesterov) {
-				theta = theta.add(v.mul(momentum).sub(gradient.mul(alpha_t)));
-			} else {
-				theta = theta.add(v);
-			}
-			m = v;
+				state.v.set(feature, v);
+				state.lastStep.set(feature, t);
+				if (nesterov) {
+					theta.addToValue(feature, momentum * v - alpha_t * g);
+				} else {
+					theta.addToValue(feature, v);
+				}
+			});
 		}
 		return theta;
 	}
@@ -0,0 +1,291 @@
+package learning.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import templates.AbstractTemplate;
+import utility.ExecutionContext;
+
+/**
+ * Runs the application of the templates of a model (see
+ * <b>Model.setScheduler()</b>) as work units instead of nested parallel
+ * streams. The work of each phase is split into flat units of (template
+ * &times; chunk of states) or (template &times; chunk of patterns). The size
+ * of the chunks is derived from the measured cost per state or pattern of
+ * each template, so that all units of a phase have about the same estimated
+ * cost and an expensive template is spread over more units than a cheap one.
+ * The most expensive units are started first. The units run in the
+ * ExecutionContext of the model, so that they share its threads and are part
+ * of its metrics (see <b>ExecutionContext.registerMetrics()</b>).
+ * </br>
+ * Costs are measured while the units run and smoothed over the calls. Until
+ * the cost of a template is known, the average cost of the known templates
+ * is assumed.
+ */
+public class ModelScheduler {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	/**
+	 * The phases of the application of a template, for which costs are
+	 * measured separately.
+	 */
+	public enum Phase {
+		/**
+		 * The generation of the factor patterns of a state.
+		 */
+		GENERATION,
+		/**
+		 * The computation of the features of a factor.
+		 */
+		COMPUTATION
+	}
+
+	/**
+	 * The number of units per worker thread into which a phase is split, so
+	 * that idle workers can steal work if the estimates are off.
+	 */
+	private static final int UNITS_PER_WORKER = 4;
+	/**
+	 * The weight of a new measurement in the smoothed cost.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	private static class CostEstimate {
+		private final double[] costPerItem = new double[Phase.values().length];
+
+		public CostEstimate() {
+			Arrays.fill(costPerItem, Double.NaN);
+		}
+
+		private synchronized void record(Phase phase, double cost) {
+			double previous = costPerItem[phase.ordinal()];
+			costPerItem[phase.ordinal()] = Double.isNaN(previous) ? cost
+					: (1 - SMOOTHING) * previous + SMOOTHING * cost;
+		}
+
+		private synchronized double get(Phase phase) {
+			return costPerItem[phase.ordinal()];
+		}
+	}
+
+	private static class WorkUnit<K extends AbstractTemplate<?, ?, ?>, T> extends RecursiveAction {
+		private final K key;
+		private final List<T> items;
+		private final double estimatedCost;
+		private final BiConsumer<K, List<T>> worker;
+		private final ModelScheduler scheduler;
+		private final Phase phase;
+
+		public WorkUnit(ModelScheduler scheduler, Phase phase, K key, List<T> items, double estimatedCost,
+				BiConsumer<K, List<T>> worker) {
+			this.scheduler = scheduler;
+			this.phase = phase;
+			this.key = key;
+			this.items = items;
+			this.estimatedCost = estimatedCost;
+			this.worker = worker;
+		}
+
+		@Override
+		protected void compute() {
+			long start = System.nanoTime();
+			worker.accept(key, items);
+			scheduler.recordCost(key, phase, items.size(), System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * The context in which the units run or null to run them in the context
+	 * of the caller.
+	 */
+	private final ExecutionContext executionContext;
+	private final Map<AbstractTemplate<?, ?, ?>, CostEstimate> costs = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a scheduler that runs its units in the execution context of the
+	 * calling model (see <b>Model.setExecutionContext()</b>).
+	 */
+	public ModelScheduler() {
+		this(null);
+	}
+
+	/**
+	 * Creates a scheduler that runs its units in the given execution context.
+	 * If the model runs in another context, its threads wait for the units of
+	 * this context.
+	 *
+	 * @param executionContext
+	 */
+	public ModelScheduler(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+
+	/**
+	 * Returns the context in which the units run or null if they run in the
+	 * context of the caller.
+	 *
+	 * @return
+	 */
+	public ExecutionContext getExecutionContext() {
+		return executionContext;
+	}
+
+	/**
+	 * Returns the number of threads among which the units are distributed,
+	 * i.e. the parallelism of the context of this scheduler or of the pool of
+	 * the current thread.
+	 *
+	 * @return
+	 */
+	public int getParallelism() {
+		if (executionContext != null) {
+			return executionContext.getParallelism();
+		}
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return (pool != null ? pool : ForkJoinPool.commonPool()).getParallelism();
+	}
+
+	/**
+	 * Returns the smoothed cost in nanoseconds per state (GENERATION) or per
+	 * pattern (COMPUTATION) of the given template or NaN if it was not measured
+	 * yet.
+	 *
+	 * @param template
+	 * @param phase
+	 * @return
+	 */
+	public double getCostPerItem(AbstractTemplate<?, ?, ?> template, Phase phase) {
+		CostEstimate estimate = costs.get(template);
+		return estimate != null ? estimate.get(phase) : Double.NaN;
+	}
+
+	/**
+	 * Records that the given template processed the given number of items in
+	 * the given phase in <i>nanos</i> nanoseconds.
+	 *
+	 * @param template
+	 * @param phase
+	 * @param items
+	 * @param nanos
+	 */
+	public void recordCost(AbstractTemplate<?, ?, ?> template, Phase phase, int items, long nanos) {
+		if (items > 0) {
+			costs.computeIfAbsent(template, t -> new CostEstimate()).record(phase, (double) nanos / items);
+		}
+	}
+
+	/**
+	 * Processes the items of all templates in the given phase. The items of
+	 * each template are split into chunks of about equal estimated cost
+	 * (across all templates) and each chunk is passed to the worker together
+	 * with its template. The worker is called concurrently and must be thread
+	 * safe. This method returns when all chunks are processed.
+	 *
+	 * @param phase
+	 * @param work
+	 * @param worker
+	 */
+	public <K extends AbstractTemplate<?, ?, ?>, T> void run(Phase phase, Map<K, ? extends List<T>> work,
+			BiConsumer<K, List<T>> worker) {
+		double defaultCost = getAverageCost(phase);
+		double totalCost = 0;
+		for (Entry<K, ? extends List<T>> e : work.entrySet()) {
+			totalCost += e.getValue().size() * getCost(e.getKey(), phase, defaultCost);
+		}
+		double targetCost = totalCost / (getParallelism() * UNITS_PER_WORKER);
+
+		List<WorkUnit<K, T>> units = new ArrayList<>();
+		for (Entry<K, ? extends List<T>> e : work.entrySet()) {
+			List<T> items = e.getValue();
+			if (items.isEmpty()) {
+				continue;
+			}
+			double cost = getCost(e.getKey(), phase, defaultCost);
+			int numberOfChunks = 1;
+			if (targetCost > 0) {
+				numberOfChunks = (int) Math.max(1,
+						Math.min(items.size(), Math.ceil(items.size() * cost / targetCost)));
+			}
+			int chunkSize = (items.size() + numberOfChunks - 1) / numberOfChunks;
+			for (int from = 0; from < items.size(); from += chunkSize) {
+				List<T> chunk = items.subList(from, Math.min(items.size(), from + chunkSize));
+				units.add(new WorkUnit<>(this, phase, e.getKey(), chunk, chunk.size() * cost, worker));
+			}
+		}
+		log.debug("Split %s phase of %s templates into %s units.", phase, work.size(), units.size());
+		/*
+		 * ForkJoinTask.invokeAll() forks the tasks from the last to the second
+		 * one and idle workers steal the oldest forked task first. Thus, the
+		 * units are sorted by ascending cost, so that the most expensive units
+		 * are started first.
+		 */
+		units.sort((u1, u2) -> Double.compare(u1.estimatedCost, u2.estimatedCost));
+		invokeAll(units);
+	}
+
+	/**
+	 * Runs the given tasks in the context of this scheduler and returns when
+	 * all of them are done.
+	 *
+	 * @param tasks
+	 */
+	public void invokeAll(List<? extends ForkJoinTask<?>> tasks) {
+		if (tasks.isEmpty()) {
+			return;
+		}
+		if (executionContext != null) {
+			executionContext.run(() -> ForkJoinTask.invokeAll(tasks));
+		} else {
+			ForkJoinTask.invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Runs the given actions in the context of this scheduler and returns when
+	 * all of them are done.
+	 *
+	 * @param actions
+	 */
+	public void runAll(List<? extends Runnable> actions) {
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(actions.size());
+		for (Runnable action : actions) {
+			tasks.add(ForkJoinTask.adapt(action));
+		}
+		invokeAll(tasks);
+	}
+
+	private double getCost(AbstractTemplate<?, ?, ?> template, Phase phase, double defaultCost) {
+		double cost = getCostPerItem(template, phase);
+		return Double.isNaN(cost) ? defaultCost : cost;
+	}
+
+	private double getAverageCost(Phase phase) {
+		double sum = 0;
+		int count = 0;
+		for (CostEstimate estimate : costs.values()) {
+			double cost = estimate.get(phase);
+			if (!Double.isNaN(cost)) {
+				sum += cost;
+				count++;
+			}
+		}
+		return count > 0 ? sum / count : 1;
+	}
+
+	@Override
+	public String toString() {
+		return "ModelScheduler [executionContext=" + executionContext + "]";
+	}
+}
@@ -0,0 +1,144 @@
+package learning.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import learning.Vector;
+
+/**
+ * A vector that gives each thread its own copy (replica) of a master vector.
+ * All reads and updates of a thread are performed on its replica, which is
+ * created from the master vector on first access. The replicas are merged
+ * into the master vector with <b>average()</b>, which must not be called
+ * while other threads use this vector. This is used for training with
+ * periodic parameter averaging (see SynchronizationPolicies).
+ */
+public class ReplicatedVector extends Vector {
+
+	private final Vector master;
+	private transient Map<Thread, Replica> replicas = new ConcurrentHashMap<>();
+
+	private static class Replica {
+		private final Vector values;
+		private boolean updated = false;
+
+		public Replica(Vector values) {
+			this.values = values;
+		}
+	}
+
+	public ReplicatedVector(Vector master) {
+		super(0);
+		this.master = master;
+		setFeatureHasher(master.getFeatureHasher());
+	}
+
+	public Vector getMaster() {
+		return master;
+	}
+
+	private Replica replica() {
+		return replicas.computeIfAbsent(Thread.currentThread(), thread -> {
+			Vector values = master.newEmptyVector();
+			master.forEachFeature(values::set);
+			return new Replica(values);
+		});
+	}
+
+	/**
+	 * Sets the master vector to the average of all replicas that were updated
+	 * since the last call of this method and discards all replicas. If no
+	 * replica was updated, the master vector stays the same.
+	 */
+	public void average() {
+		List<Vector> updatedReplicas = new ArrayList<>();
+		for (Replica replica : replicas.values()) {
+			if (replica.updated) {
+				updatedReplicas.add(replica.values);
+			}
+		}
+		replicas.clear();
+		if (updatedReplicas.isEmpty()) {
+			return;
+		}
+		Vector sum = new Vector(master.size());
+		for (Vector values : updatedReplicas) {
+			sum.addToValue(values);
+		}
+		List<Integer> removedFeatures = new ArrayList<>();
+		master.forEachFeature((feature, value) -> {
+			if (!sum.hasValueForFeature(feature)) {
+				removedFeatures.add(feature);
+			}
+		});
+		for (int feature : removedFeatures) {
+			master.remove(feature);
+		}
+		int n = updatedReplicas.size();
+		sum.forEachFeature((feature, value) -> master.set(feature, value / n));
+	}
+
+	@Override
+	public void set(int feature, double value) {
+		Replica replica = replica();
+		replica.values.set(feature, value);
+		replica.updated = true;
+	}
+
+	@Override
+	public double getValueOfFeature(int feature) {
+		return replica().values.getValueOfFeature(feature);
+	}
+
+	@Override
+	public void remove(int feature) {
+		Replica replica = replica();
+		replica.values.remove(feature);
+		replica.updated = true;
+	}
+
+	@Override
+	public void forEachFeature(FeatureConsumer consumer) {
+		replica().values.forEachFeature(consumer);
+	}
+
+	/**
+	 * Returns a new replicated vector, so that e.g. the state of an optimizer
+	 * is kept separately for each thread as well.
+	 */
+	@Override
+	public Vector newEmptyVector() {
+		return new ReplicatedVector(master.newEmptyVector());
+	}
+
+	@Override
+	public boolean isSharedAcrossThreads() {
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return replica().values.size();
+	}
+
+	@Override
+	protected double sumOfProducts(Vector other) {
+		return replica().values.dotProduct(other);
+	}
+
+	@Override
+	public void normalize() {
+		Replica replica = replica();
+		replica.values.normalize();
+		replica.updated = true;
+	}
+
+	/*
+	 * Only the master vector is serialized.
+	 */
+	private Object writeReplace() {
+		return master;
+	}
+}
@@ -0,0 +1,138 @@
+package learning.parallel;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import learning.DenseVector;
+import learning.Model;
+import templates.AbstractTemplate;
+
+public class SynchronizationPolicies {
+
+	/**
+	 * Returns a policy that lets all chains update the shared weights without
+	 * any locking (Hogwild). The weights of all templates are converted to
+	 * DenseVectors, which can be read safely while they are updated. Since the
+	 * updates are sparse, conflicting updates are rare and are simply
+	 * accepted.
+	 *
+	 * @return
+	 */
+	public static SynchronizationPolicy hogwild() {
+		return new SynchronizationPolicy() {
+
+			@Override
+			public void beforeTraining(Model<?, ?> model) {
+				useDenseWeights(model);
+			}
+
+			@Override
+			public int getRoundSize(int numberOfChains) {
+				return Integer.MAX_VALUE;
+			}
+
+			@Override
+			public void synchronize(Model<?, ?> model) {
+			}
+
+			@Override
+			public void afterTraining(Model<?, ?> model) {
+			}
+		};
+	}
+
+	/**
+	 * Returns a policy that guards the weights of each template with its own
+	 * lock. Updates of the same template are applied one after another, while
+	 * different templates can be updated concurrently. Scoring does not
+	 * acquire the locks. Like for <b>hogwild()</b>, the weights of all
+	 * templates are converted to DenseVectors.
+	 *
+	 * @return
+	 */
+	public static SynchronizationPolicy perTemplateLocks() {
+		return new SynchronizationPolicy() {
+
+			@Override
+			public void beforeTraining(Model<?, ?> model) {
+				useDenseWeights(model);
+				for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+					t.setWeightsLock(new ReentrantLock());
+				}
+			}
+
+			@Override
+			public int getRoundSize(int numberOfChains) {
+				return Integer.MAX_VALUE;
+			}
+
+			@Override
+			public void synchronize(Model<?, ?> model) {
+			}
+
+			@Override
+			public void afterTraining(Model<?, ?> model) {
+				for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+					t.setWeightsLock(null);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a policy in which each chain trains its own copy of the weights
+	 * (see ReplicatedVector). After every chain processed
+	 * <i>instancesPerChain</i> instances, the copies are averaged and the
+	 * average becomes the new starting point of all chains.
+	 *
+	 * @param instancesPerChain
+	 * @return
+	 */
+	public static SynchronizationPolicy parameterAveraging(int instancesPerChain) {
+		if (instancesPerChain < 1) {
+			throw new IllegalArgumentException("At least one instance per chain is required between two averagings.");
+		}
+		return new SynchronizationPolicy() {
+
+			@Override
+			public void beforeTraining(Model<?, ?> model) {
+				for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+					t.setWeights(new ReplicatedVector(t.getWeights()));
+				}
+			}
+
+			@Override
+			public int getRoundSize(int numberOfChains) {
+				return (int) Math.min(Integer.MAX_VALUE, (long) numberOfChains * instancesPerChain);
+			}
+
+			@Override
+			public void synchronize(Model<?, ?> model) {
+				for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+					if (t.getWeights() instanceof ReplicatedVector) {
+						((ReplicatedVector) t.getWeights()).average();
+						t.weightsChanged();
+					}
+				}
+			}
+
+			@Override
+			public void afterTraining(Model<?, ?> model) {
+				for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+					if (t.getWeights() instanceof ReplicatedVector) {
+						ReplicatedVector weights = (ReplicatedVector) t.getWeights();
+						weights.average();
+						t.setWeights(weights.getMaster());
+					}
+				}
+			}
+		};
+	}
+
+	private static void useDenseWeights(Model<?, ?> model) {
+		for (AbstractTemplate<?, ?, ?> t : model.getTemplates()) {
+			if (!(t.getWeights() instanceof DenseVector)) {
+				t.setWeights(new DenseVector(t.getWeights()));
+			}
+		}
+	}
+}
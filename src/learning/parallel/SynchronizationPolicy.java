@@ -0,0 +1,44 @@
+package learning.parallel;
+
+import learning.Model;
+
+/**
+ * Defines how the weight updates of several concurrently running sampling
+ * chains are synchronized during parallel training (see ParallelTrainer).
+ * Implementations for common policies are provided by
+ * SynchronizationPolicies.
+ */
+public interface SynchronizationPolicy {
+
+	/**
+	 * Prepares the templates of the model before the parallel training
+	 * starts, e.g. by switching their weights to a thread safe backend.
+	 *
+	 * @param model
+	 */
+	public void beforeTraining(Model<?, ?> model);
+
+	/**
+	 * Returns the number of training instances that are processed between two
+	 * calls to <b>synchronize()</b>.
+	 *
+	 * @param numberOfChains
+	 * @return
+	 */
+	public int getRoundSize(int numberOfChains);
+
+	/**
+	 * Is called after each round, while no chain is running.
+	 *
+	 * @param model
+	 */
+	public void synchronize(Model<?, ?> model);
+
+	/**
+	 * Restores the templates of the model after the parallel training
+	 * finished.
+	 *
+	 * @param model
+	 */
+	public void afterTraining(Model<?, ?> model);
+}
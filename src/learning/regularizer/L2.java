@@ -13,9 +13,16 @@ public class L2 implements Regularizer {
 		this.l2 = l2;
 	}
 
+	/**
+	 * Adds the L2 penalty to the given gradients. Only the weights of features
+	 * that are present in the gradients are penalized, which keeps the
+	 * regularized gradients as sparse as the gradients.
+	 */
 	@Override
 	public Vector regularize(Vector gradients, Vector weights) {
-		Vector regularized = gradients.add(weights.mul(l2));
+		Vector regularized = new Vector(gradients.size());
+		gradients.forEachFeature(
+				(feature, gradient) -> regularized.set(feature, gradient + l2 * weights.getValueOfFeature(feature)));
 		return regularized;
 	}
 
@@ -0,0 +1,281 @@
+package learning.scorer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import exceptions.MissingFactorException;
+import factors.Factor;
+import factors.FactorGraph;
+import factors.FactorPattern;
+import factors.FactorPool;
+import utility.ExecutionContext;
+import utility.Utils;
+import variables.AbstractState;
+
+/**
+ * Base class for scorers whose state score is a function of the sum of
+ * individual factor scores: <i>score(state) = f(sum_i factorScore(f_i))</i>.
+ * For such scorers, the score of a state that was derived from another state
+ * can be computed incrementally from the (raw) score of its parent and the
+ * factor patterns that were added to or removed from the parent's factor
+ * graph (see <b>scoreIncrementally</b>).
+ *
+ */
+public abstract class AbstractAdditiveScorer extends AbstractSingleStateScorer {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	/**
+	 * If true, lists of states are scored in batches (see FactorBatch).
+	 */
+	private boolean batchScoring = false;
+
+	/**
+	 * If true, the dot products of factors are cached in the factors until the
+	 * weights of their templates change (see Factor.dotProduct()).
+	 */
+	private boolean cacheDotProducts = true;
+
+	/**
+	 * Returns the contribution of a factor with the given dot product of its
+	 * features and the weights of its template to the raw score of a state.
+	 *
+	 * @param dotProduct
+	 * @return
+	 */
+	protected abstract double factorScore(double dotProduct);
+
+	/**
+	 * Returns the contribution of this factor to the raw score of a state.
+	 *
+	 * @param factor
+	 * @return
+	 */
+	protected double factorScore(Factor<?> factor) {
+		if (cacheDotProducts) {
+			return factorScore(factor.dotProduct());
+		}
+		return factorScore(factor.getFeatureVector().dotProduct(factor.getTemplate().getWeights()));
+	}
+
+	/**
+	 * Converts the raw score, i.e. the sum of all factor scores, to the model
+	 * score of the state.
+	 *
+	 * @param rawScore
+	 * @return
+	 */
+	protected abstract double toModelScore(double rawScore);
+
+	public boolean isBatchScoring() {
+		return batchScoring;
+	}
+
+	/**
+	 * Enables or disables the batch scoring of lists of states. In a batch,
+	 * the distinct factors of the given states are collected first, so that
+	 * factors that are shared by several states are scored only once. This
+	 * only pays off if factor scores are expensive, e.g. without cached dot
+	 * products and with many features per factor, since collecting the
+	 * distinct factors costs a hash lookup per factor of each state. By
+	 * default, states are scored one by one.
+	 *
+	 * @param batchScoring
+	 */
+	public void setBatchScoring(boolean batchScoring) {
+		this.batchScoring = batchScoring;
+	}
+
+	public boolean isCacheDotProducts() {
+		return cacheDotProducts;
+	}
+
+	/**
+	 * Enables or disables the caching of the dot products of factors. Since
+	 * the FactorPool shares factors across neighboring states, a factor is
+	 * then evaluated only once per version of the weights of its template,
+	 * e.g. only once during prediction.
+	 *
+	 * @param cacheDotProducts
+	 */
+	public void setCacheDotProducts(boolean cacheDotProducts) {
+		this.cacheDotProducts = cacheDotProducts;
+	}
+
+	@Override
+	public void score(List<? extends AbstractState<?>> states, boolean multiThreaded) {
+		if (batchScoring) {
+			scoreBatch(states, multiThreaded);
+		} else {
+			super.score(states, multiThreaded);
+		}
+	}
+
+	/**
+	 * Scores all given states from scratch as one batch.
+	 *
+	 * @param states
+	 * @param multiThreaded
+	 */
+	protected void scoreBatch(List<? extends AbstractState<?>> states, boolean multiThreaded) {
+		FactorBatch batch;
+		try {
+			batch = new FactorBatch(states);
+		} catch (MissingFactorException e) {
+			e.printStackTrace();
+			super.score(states, multiThreaded);
+			return;
+		}
+		log.trace("Score %s states with %s distinct factors in a batch.", states.size(), batch.getNumberOfFactors());
+		double[] factorScores = batch.computeFactorScores(f -> factorScore(f), multiThreaded);
+		for (int i = 0; i < states.size(); i++) {
+			AbstractState<?> state = states.get(i);
+			FactorGraph factorGraph = state.getFactorGraph();
+			double rawScore = batch.rawScore(i, factorScores);
+			factorGraph.setRawScore(rawScore);
+			factorGraph.detachFromParent();
+			state.setModelScore(toModelScore(rawScore));
+		}
+	}
+
+	@Override
+	protected double score(Collection<Factor<?>> factors) {
+		return toModelScore(rawScore(factors));
+	}
+
+	@Override
+	protected double score(AbstractState<?> state) {
+		FactorGraph factorGraph = state.getFactorGraph();
+		Collection<Factor<?>> factors = null;
+		try {
+			factors = factorGraph.getFactors();
+		} catch (MissingFactorException e) {
+			e.printStackTrace();
+		}
+		double rawScore = rawScore(factors);
+		factorGraph.setRawScore(rawScore);
+		factorGraph.detachFromParent();
+		double score = toModelScore(rawScore);
+		state.setModelScore(score);
+		return score;
+	}
+
+	private double rawScore(Collection<Factor<?>> factors) {
+		double rawScore = 0;
+		for (Factor<?> factor : factors) {
+			rawScore += factorScore(factor);
+		}
+		return rawScore;
+	}
+
+	/**
+	 * Scores the given states like <b>score(states, multiThreaded)</b> but
+	 * computes the scores of states that were derived from another state of
+	 * this list incrementally: first, all states without such a parent state
+	 * are scored from scratch. After that, the score of each remaining state
+	 * is computed as the raw score of its parent plus the scores of the added
+	 * and minus the scores of the removed factors. Thus, only the factors that
+	 * differ from the parent's factor graph are evaluated.
+	 *
+	 * @param states
+	 * @param multiThreaded
+	 */
+	public void scoreIncrementally(List<? extends AbstractState<?>> states, boolean multiThreaded) {
+		Set<FactorGraph> factorGraphs = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (AbstractState<?> state : states) {
+			factorGraphs.add(state.getFactorGraph());
+		}
+		/*
+		 * A state can only be scored incrementally if its parent is scored
+		 * from scratch in the first phase.
+		 */
+		List<AbstractState<?>> fullStates = new ArrayList<>();
+		List<AbstractState<?>> deltaStates = new ArrayList<>();
+		for (AbstractState<?> state : states) {
+			FactorGraph factorGraph = state.getFactorGraph();
+			if (hasParentIn(factorGraph, factorGraphs) && !hasParentIn(factorGraph.getParent(), factorGraphs)) {
+				deltaStates.add(state);
+			} else {
+				fullStates.add(state);
+			}
+		}
+
+		log.debug("Score %s states from scratch and %s states incrementally.", fullStates.size(),
+				deltaStates.size());
+		score(fullStates, multiThreaded);
+
+		Map<FactorGraph, Map<FactorPattern, Integer>> parentPatternCounts = new IdentityHashMap<>();
+		for (AbstractState<?> state : deltaStates) {
+			parentPatternCounts.computeIfAbsent(state.getFactorGraph().getParent(),
+					p -> countPatterns(p.getFactorPatterns()));
+		}
+		Stream<AbstractState<?>> stream = Utils.getStream(deltaStates, multiThreaded);
+		stream.forEach(s -> scoreIncrementally(s, parentPatternCounts.get(s.getFactorGraph().getParent())));
+	}
+
+	/**
+	 * Scores the given states incrementally (see <b>scoreIncrementally(states,
+	 * multiThreaded)</b>) in parallel in the given execution context.
+	 *
+	 * @param states
+	 * @param executionContext
+	 */
+	public void scoreIncrementally(List<? extends AbstractState<?>> states, ExecutionContext executionContext) {
+		executionContext.run(() -> scoreIncrementally(states, true));
+	}
+
+	private double scoreIncrementally(AbstractState<?> state, Map<FactorPattern, Integer> parentPatternCounts) {
+		FactorGraph factorGraph = state.getFactorGraph();
+		FactorGraph parent = factorGraph.getParent();
+		FactorPool factorPool = factorGraph.getFactorPool();
+		Map<FactorPattern, Integer> patternCounts = countPatterns(factorGraph.getFactorPatterns());
+
+		double rawScore = parent.getRawScore();
+		try {
+			for (Entry<FactorPattern, Integer> e : patternCounts.entrySet()) {
+				int difference = e.getValue() - parentPatternCounts.getOrDefault(e.getKey(), 0);
+				if (difference != 0) {
+					rawScore += difference * factorScore(factorPool.getFactor(e.getKey()));
+				}
+			}
+			for (Entry<FactorPattern, Integer> e : parentPatternCounts.entrySet()) {
+				if (!patternCounts.containsKey(e.getKey())) {
+					rawScore -= e.getValue() * factorScore(factorPool.getFactor(e.getKey()));
+				}
+			}
+		} catch (MissingFactorException e) {
+			e.printStackTrace();
+		}
+		factorGraph.setRawScore(rawScore);
+		factorGraph.detachFromParent();
+		double score = toModelScore(rawScore);
+		state.setModelScore(score);
+		return score;
+	}
+
+	private static boolean hasParentIn(FactorGraph factorGraph, Set<FactorGraph> factorGraphs) {
+		return factorGraph.getParent() != null && factorGraphs.contains(factorGraph.getParent());
+	}
+
+	/**
+	 * Counts the patterns by identity, since the Model interns all patterns
+	 * in the factor pool (see FactorPool.intern()).
+	 */
+	private static Map<FactorPattern, Integer> countPatterns(Collection<FactorPattern> factorPatterns) {
+		Map<FactorPattern, Integer> counts = new IdentityHashMap<>();
+		for (FactorPattern factorPattern : factorPatterns) {
+			counts.merge(factorPattern, 1, Integer::sum);
+		}
+		return counts;
+	}
+}
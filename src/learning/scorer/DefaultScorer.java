@@ -1,14 +1,9 @@
 package learning.scorer;
 
-import java.util.Collection;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import factors.Factor;
-import learning.Vector;
-
-public class DefaultScorer extends AbstractSingleStateScorer {
+public class DefaultScorer extends AbstractAdditiveScorer {
 
 	private static Logger log = LogManager.getFormatterLogger();
 
@@ -25,15 +20,16 @@ public class DefaultScorer extends AbstractSingleStateScorer {
 	}
 
 	@Override
-	protected double score(Collection<Factor<?>> factors) {
-		double score = 1;
-		for (Factor<?> factor : factors) {
-			Vector featureVector = factor.getFeatureVector();
-			Vector weights = factor.getTemplate().getWeights();
-			double dotProduct = featureVector.dotProduct(weights);
-			double factorScore = Math.exp(dotProduct);
-			score *= factorScore;
-		}
-		return score;
+	protected double factorScore(double dotProduct) {
+		return dotProduct;
+	}
+
+	/**
+	 * The product of the exponential factor scores equals the exponential of
+	 * the sum of the dot products.
+	 */
+	@Override
+	protected double toModelScore(double rawScore) {
+		return Math.exp(rawScore);
 	}
 }
@@ -0,0 +1,97 @@
+package learning.scorer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import exceptions.MissingFactorException;
+import factors.Factor;
+import variables.AbstractState;
+
+/**
+ * Collects the distinct factors of a batch of states, so that the score of a
+ * factor that belongs to several states of the batch (e.g. to many
+ * neighboring states of a sampling step) is computed only once. Factors are
+ * distinguished by identity, since the FactorPool shares the factor objects
+ * across states. The score of each distinct factor is computed directly from
+ * its feature vector and the weights of its template (or its cached dot
+ * product, see Factor.dotProduct()). </br>
+ * The batch stores the rows of the distinct factors of each state in the
+ * order of its factor graph in one primitive array.
+ */
+class FactorBatch {
+
+	/**
+	 * Below this number of factors, the factor scores are computed in a
+	 * single thread.
+	 */
+	private static final int MIN_PARALLEL_FACTORS = 1024;
+
+	private final int[] stateOffsets;
+	private int[] stateFactors;
+
+	private final List<Factor<?>> factors = new ArrayList<>();
+
+	public FactorBatch(List<? extends AbstractState<?>> states) throws MissingFactorException {
+		Map<Factor<?>, Integer> factorRows = new IdentityHashMap<>();
+		stateOffsets = new int[states.size() + 1];
+		stateFactors = new int[16];
+		int entries = 0;
+		for (int s = 0; s < states.size(); s++) {
+			for (Factor<?> factor : states.get(s).getFactorGraph().getFactors()) {
+				Integer row = factorRows.get(factor);
+				if (row == null) {
+					row = factors.size();
+					factorRows.put(factor, row);
+					factors.add(factor);
+				}
+				if (entries == stateFactors.length) {
+					stateFactors = Arrays.copyOf(stateFactors, 2 * entries);
+				}
+				stateFactors[entries++] = row;
+			}
+			stateOffsets[s + 1] = entries;
+		}
+	}
+
+	public int getNumberOfFactors() {
+		return factors.size();
+	}
+
+	/**
+	 * Computes the score of each distinct factor with the given function.
+	 *
+	 * @param factorScore
+	 * @param parallel
+	 * @return the factor scores, indexed by factor row
+	 */
+	public double[] computeFactorScores(ToDoubleFunction<Factor<?>> factorScore, boolean parallel) {
+		double[] factorScores = new double[factors.size()];
+		IntStream rows = IntStream.range(0, factors.size());
+		if (parallel && factors.size() >= MIN_PARALLEL_FACTORS) {
+			rows = rows.parallel();
+		}
+		rows.forEach(f -> factorScores[f] = factorScore.applyAsDouble(factors.get(f)));
+		return factorScores;
+	}
+
+	/**
+	 * Returns the sum of the scores of all factors of the given state.
+	 *
+	 * @param state
+	 *            the index of the state in the batch
+	 * @param factorScores
+	 * @return
+	 */
+	public double rawScore(int state, double[] factorScores) {
+		double rawScore = 0;
+		for (int j = stateOffsets[state]; j < stateOffsets[state + 1]; j++) {
+			rawScore += factorScores[stateFactors[j]];
+		}
+		return rawScore;
+	}
+}
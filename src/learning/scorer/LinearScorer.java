@@ -1,14 +1,9 @@
 package learning.scorer;
 
-import java.util.Collection;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import factors.Factor;
-import learning.Vector;
-
-public class LinearScorer extends AbstractSingleStateScorer {
+public class LinearScorer extends AbstractAdditiveScorer {
 
 	private static Logger log = LogManager.getFormatterLogger();
 
@@ -24,30 +19,14 @@ public class LinearScorer extends AbstractSingleStateScorer {
 	public LinearScorer() {
 	}
 
-	/**
-	 * Computes the score of this state according to the trained model. The
-	 * computed score is returned but also updated in the state objects
-	 * <i>score</i> field.
-	 * 
-	 * @param state
-	 * @return
-	 */
-	protected double score(Collection<Factor<?>> factors) {
-		// at this point, the function unroll(state) should be applied at least
-		// once
-
-		// compute the score of the state according to all templates and all
-		// respective factors
+	@Override
+	protected double factorScore(double dotProduct) {
+		return dotProduct;
+	}
 
-		double score = 0;
-		for (Factor<?> factor : factors) {
-			Vector featureVector = factor.getFeatureVector();
-			Vector weights = factor.getTemplate().getWeights();
-			double dotProduct = featureVector.dotProduct(weights);
-			double factorScore = dotProduct;
-			score += factorScore;
-		}
-		return score;
+	@Override
+	protected double toModelScore(double rawScore) {
+		return rawScore;
 	}
 
 }
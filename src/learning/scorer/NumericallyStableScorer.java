@@ -10,7 +10,6 @@ import org.apache.logging.log4j.Logger;
 
 import exceptions.MissingFactorException;
 import factors.Factor;
-import learning.Vector;
 import variables.AbstractState;
 
 public class NumericallyStableScorer implements Scorer {
@@ -64,10 +63,7 @@ public class NumericallyStableScorer implements Scorer {
 		}
 		double score = 0;
 		for (Factor<?> factor : factors) {
-			Vector featureVector = factor.getFeatureVector();
-			Vector weights = factor.getTemplate().getWeights();
-			double dotProduct = featureVector.dotProduct(weights);
-			score += dotProduct;
+			score += factor.dotProduct();
 		}
 
 		return score;
@@ -2,6 +2,7 @@ package learning.scorer;
 
 import java.util.List;
 
+import utility.ExecutionContext;
 import variables.AbstractState;
 
 public interface Scorer {
@@ -15,4 +16,15 @@ public interface Scorer {
 	 */
 	public void score(List<? extends AbstractState<?>> states, boolean multiThreaded);
 
+	/**
+	 * Scores the given states in parallel in the given execution context
+	 * instead of the common ForkJoinPool.
+	 * 
+	 * @param states
+	 * @param executionContext
+	 */
+	public default void score(List<? extends AbstractState<?>> states, ExecutionContext executionContext) {
+		executionContext.run(() -> score(states, true));
+	}
+
 }
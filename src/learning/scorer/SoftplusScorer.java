@@ -1,14 +1,9 @@
 package learning.scorer;
 
-import java.util.Collection;
-
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import factors.Factor;
-import learning.Vector;
-
-public class SoftplusScorer extends AbstractSingleStateScorer {
+public class SoftplusScorer extends AbstractAdditiveScorer {
 
 	private static Logger log = LogManager.getFormatterLogger();
 
@@ -25,33 +20,35 @@ public class SoftplusScorer extends AbstractSingleStateScorer {
 	}
 
 	/**
-	 * Computes the score of this state according to the trained model. The
-	 * computed score is returned but also updated in the state objects
-	 * <i>score</i> field.
-	 * 
-	 * @param state
-	 * @return
+	 * Below this dot product, <i>log(softplus(x))</i> equals <i>x</i> within
+	 * double precision.
 	 */
-	protected double score(Collection<Factor<?>> factors) {
-		// at this point, the function unroll(state) should be applied at least
-		// once
-
-		// compute the score of the state according to all templates and all
-		// respective factors
-
-		double score = 1;
-		for (Factor<?> factor : factors) {
-			Vector featureVector = factor.getFeatureVector();
-			Vector weights = factor.getTemplate().getWeights();
-			double dotProduct = featureVector.dotProduct(weights);
-			double factorScore = softplus(dotProduct);
-			score *= factorScore;
+	private static final double LINEAR_THRESHOLD = -37;
+
+	/**
+	 * The product of the individual softplus scores is computed as the
+	 * exponential of the sum of their logarithms. For very negative dot
+	 * products, <i>exp(x)</i> underflows, so that <i>log(softplus(x))</i> is
+	 * approximated by <i>x</i> instead of becoming -Infinity.
+	 */
+	@Override
+	protected double factorScore(double dotProduct) {
+		if (dotProduct < LINEAR_THRESHOLD) {
+			return dotProduct;
 		}
-		return score;
+		return Math.log(softplus(dotProduct));
+	}
+
+	@Override
+	protected double toModelScore(double rawScore) {
+		return Math.exp(rawScore);
 	}
 
 	public double softplus(double x) {
-		return Math.log(1 + Math.exp(x));
+		if (x > 0) {
+			return x + Math.log1p(Math.exp(-x));
+		}
+		return Math.log1p(Math.exp(x));
 	}
 
 }
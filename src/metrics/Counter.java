@@ -0,0 +1,42 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe counter. Concurrent increments are accumulated in striped
+ * cells (LongAdder) and thus do not contend on a single variable.
+ */
+public class Counter implements Metric {
+
+	private final LongAdder count = new LongAdder();
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long n) {
+		count.add(n);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public void snapshot(String name, Map<String, Double> snapshot, double elapsedSeconds) {
+		long count = getCount();
+		snapshot.put(name + ".count", (double) count);
+		snapshot.put(name + ".rate", elapsedSeconds > 0 ? count / elapsedSeconds : 0);
+	}
+
+	@Override
+	public void reset() {
+		count.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "Counter [count=" + getCount() + "]";
+	}
+}
@@ -0,0 +1,47 @@
+package metrics;
+
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A metric whose value is read from a supplier whenever a snapshot is taken,
+ * e.g. the current queue depth of an executor.
+ */
+public class Gauge implements Metric {
+
+	private volatile DoubleSupplier value;
+
+	public Gauge(DoubleSupplier value) {
+		this.value = value;
+	}
+
+	public double getValue() {
+		return value.getAsDouble();
+	}
+
+	/**
+	 * Replaces the supplier of the value of this gauge.
+	 *
+	 * @param value
+	 */
+	public void setValue(DoubleSupplier value) {
+		this.value = value;
+	}
+
+	@Override
+	public void snapshot(String name, Map<String, Double> snapshot, double elapsedSeconds) {
+		snapshot.put(name + ".value", getValue());
+	}
+
+	/**
+	 * The value of a gauge is not accumulated, thus there is nothing to reset.
+	 */
+	@Override
+	public void reset() {
+	}
+
+	@Override
+	public String toString() {
+		return "Gauge [value=" + getValue() + "]";
+	}
+}
@@ -0,0 +1,136 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe histogram of non-negative long values (e.g. latencies in
+ * nanoseconds) with a bounded relative error, similar to an HDR histogram:
+ * values are counted in buckets whose width grows with the magnitude of the
+ * value, so that each bucket covers less than 1/32 of its values. Each bucket
+ * is a LongAdder, thus recording a value is cheap and does not contend with
+ * other threads. Values larger than 2^43 are counted in the last bucket.
+ */
+public class Histogram implements Metric {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 43;
+	private static final int NUMBER_OF_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public Histogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets[index(value)].increment();
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return NUMBER_OF_BUCKETS - 1;
+		}
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns a value in the middle of the range of values that are counted
+	 * in the bucket with the given index.
+	 */
+	private static long valueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowerBound = ((long) SUB_BUCKETS + subBucket) << shift;
+		return lowerBound + ((1L << shift) - 1) / 2;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count > 0 ? (double) sum.sum() / count : 0;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the (approximate) value below which the given percentage of all
+	 * recorded values fall.
+	 *
+	 * @param percentile
+	 *            in the range [0, 100]
+	 * @return
+	 */
+	public long getPercentile(double percentile) {
+		long[] counts = new long[buckets.length];
+		long total = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank) {
+				return Math.min(valueOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public void snapshot(String name, Map<String, Double> snapshot, double elapsedSeconds) {
+		snapshot.put(name + ".count", (double) getCount());
+		snapshot.put(name + ".mean", getMean());
+		snapshot.put(name + ".p50", (double) getPercentile(50));
+		snapshot.put(name + ".p90", (double) getPercentile(90));
+		snapshot.put(name + ".p99", (double) getPercentile(99));
+		snapshot.put(name + ".max", (double) getMax());
+	}
+
+	@Override
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Histogram [count=%s, mean=%.1f, p50=%s, p99=%s, max=%s]", getCount(), getMean(),
+				getPercentile(50), getPercentile(99), getMax());
+	}
+}
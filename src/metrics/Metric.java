@@ -0,0 +1,25 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * Common interface of all metrics that can be registered in a
+ * MetricsRegistry.
+ */
+public interface Metric {
+
+	/**
+	 * Adds the current values of this metric to the given snapshot. The keys
+	 * are the name of the metric followed by the name of the respective value,
+	 * e.g. <i>name.count</i>.
+	 *
+	 * @param name
+	 * @param snapshot
+	 * @param elapsedSeconds
+	 *            time since the registry was created or reset, used to compute
+	 *            rates
+	 */
+	public void snapshot(String name, Map<String, Double> snapshot, double elapsedSeconds);
+
+	public void reset();
+}
@@ -0,0 +1,256 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A thread safe collection of named metrics (counters, timers, gauges and
+ * histograms). Metrics are created on first request and can be retrieved
+ * from anywhere by their name. The components of the framework (Model,
+ * DefaultSampler, the learners and Trainer) record their metrics in the
+ * default registry unless another registry is set. </br>
+ * All values of a registry can be exported as a snapshot, either on demand
+ * (<b>snapshot()</b>), periodically to a file (<b>exportPeriodically()</b>)
+ * or via JMX (<b>registerMBean()</b>). Timer values are given in
+ * nanoseconds, rates per second.
+ */
+public class MetricsRegistry {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry("default");
+
+	private final String name;
+	private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+	private volatile long startTime = System.nanoTime();
+	private ScheduledExecutorService exportExecutor;
+
+	public MetricsRegistry(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the registry that is used by all components unless they are
+	 * given another registry.
+	 *
+	 * @return
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Counter counter(String name) {
+		return getOrCreate(name, Counter.class, Counter::new);
+	}
+
+	public Timer timer(String name) {
+		return getOrCreate(name, Timer.class, Timer::new);
+	}
+
+	public Histogram histogram(String name) {
+		return getOrCreate(name, Histogram.class, Histogram::new);
+	}
+
+	/**
+	 * Returns the gauge with the given name, which reads its value from the
+	 * given supplier. If the gauge already exists, its supplier is replaced.
+	 *
+	 * @param name
+	 * @param value
+	 * @return
+	 */
+	public Gauge gauge(String name, DoubleSupplier value) {
+		Gauge gauge = getOrCreate(name, Gauge.class, () -> new Gauge(value));
+		gauge.setValue(value);
+		return gauge;
+	}
+
+	private <MetricT extends Metric> MetricT getOrCreate(String name, Class<MetricT> type,
+			Supplier<MetricT> constructor) {
+		Metric metric = metrics.get(name);
+		if (metric == null) {
+			metric = metrics.computeIfAbsent(name, n -> constructor.get());
+		}
+		if (!type.isInstance(metric)) {
+			throw new IllegalArgumentException(String.format("Metric %s is a %s, not a %s.", name,
+					metric.getClass().getSimpleName(), type.getSimpleName()));
+		}
+		return type.cast(metric);
+	}
+
+	/**
+	 * Returns the current values of all metrics, sorted by their names.
+	 *
+	 * @return
+	 */
+	public Map<String, Double> snapshot() {
+		double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+		Map<String, Double> snapshot = new TreeMap<>();
+		for (Entry<String, Metric> e : metrics.entrySet()) {
+			e.getValue().snapshot(e.getKey(), snapshot, elapsedSeconds);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Resets all metrics and the reference time for rates.
+	 */
+	public void reset() {
+		for (Metric metric : metrics.values()) {
+			metric.reset();
+		}
+		startTime = System.nanoTime();
+	}
+
+	public void printMetrics() {
+		for (Entry<String, Double> e : snapshot().entrySet()) {
+			log.info("%s:\t%s", e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Writes the current snapshot of all metrics to the given file as tab
+	 * separated name/value pairs.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void export(File file) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmpFile))) {
+			for (Entry<String, Double> e : snapshot().entrySet()) {
+				writer.write(e.getKey() + "\t" + e.getValue());
+				writer.newLine();
+			}
+		}
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Could not write metrics to " + file);
+			}
+		}
+	}
+
+	/**
+	 * Exports a snapshot of all metrics to the given file every
+	 * <i>period</i>, replacing the previous snapshot. The export runs in a
+	 * daemon thread and can be stopped by cancelling the returned future.
+	 *
+	 * @param file
+	 * @param period
+	 * @param unit
+	 * @return
+	 */
+	public synchronized ScheduledFuture<?> exportPeriodically(File file, long period, TimeUnit unit) {
+		if (exportExecutor == null) {
+			exportExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "metrics-export-" + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return exportExecutor.scheduleAtFixedRate(() -> {
+			try {
+				export(file);
+			} catch (IOException e) {
+				log.warn("Could not export metrics to file %s: %s", file, e.getMessage());
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Registers this registry at the platform MBean server under the name
+	 * <i>bire:type=Metrics,name=&lt;name&gt;</i>. Each value of the snapshot
+	 * is exposed as a read-only attribute.
+	 *
+	 * @return
+	 * @throws JMException
+	 */
+	public ObjectName registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("bire:type=Metrics,name=" + ObjectName.quote(name));
+		server.registerMBean(new MetricsMBean(), objectName);
+		return objectName;
+	}
+
+	private class MetricsMBean implements DynamicMBean {
+
+		@Override
+		public Object getAttribute(String attribute) {
+			return snapshot().get(attribute);
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) {
+			throw new UnsupportedOperationException("Metrics are read-only.");
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			Map<String, Double> snapshot = snapshot();
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				if (snapshot.containsKey(attribute)) {
+					list.add(new Attribute(attribute, snapshot.get(attribute)));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) {
+			throw new UnsupportedOperationException(actionName);
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			Map<String, Double> snapshot = snapshot();
+			MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[snapshot.size()];
+			int i = 0;
+			for (String key : snapshot.keySet()) {
+				attributes[i++] = new MBeanAttributeInfo(key, Double.class.getName(), key, true, false, false);
+			}
+			return new MBeanInfo(MetricsRegistry.class.getName(), "Metrics of registry " + name, attributes, null,
+					null, null);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MetricsRegistry [name=" + name + ", #Metrics=" + metrics.size() + "]";
+	}
+}
@@ -0,0 +1,63 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * Measures the duration of an operation in nanoseconds and records it in a
+ * histogram. Usage:
+ * 
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ */
+public class Timer implements Metric {
+
+	private final Histogram histogram = new Histogram();
+
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the time since the given start time (see <b>start()</b>) and
+	 * returns it.
+	 *
+	 * @param start
+	 * @return the elapsed nanoseconds
+	 */
+	public long stop(long start) {
+		long elapsed = System.nanoTime() - start;
+		histogram.record(elapsed);
+		return elapsed;
+	}
+
+	public void record(long nanoseconds) {
+		histogram.record(nanoseconds);
+	}
+
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	public long getCount() {
+		return histogram.getCount();
+	}
+
+	@Override
+	public void snapshot(String name, Map<String, Double> snapshot, double elapsedSeconds) {
+		histogram.snapshot(name, snapshot, elapsedSeconds);
+		snapshot.put(name + ".rate", elapsedSeconds > 0 ? histogram.getCount() / elapsedSeconds : 0);
+	}
+
+	@Override
+	public void reset() {
+		histogram.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "Timer " + histogram;
+	}
+}
@@ -0,0 +1,204 @@
+package sampling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import corpus.Instance;
+import learning.Model;
+import learning.ObjectiveFunction;
+import learning.callbacks.StepCallback;
+import metrics.Timer;
+import sampling.stoppingcriterion.StoppingCriterion;
+import utility.Utils;
+import variables.AbstractState;
+
+/**
+ * A sampler that predicts with beam search instead of a single greedy chain.
+ * In each step, all states of the beam are expanded with the current explorer
+ * (in parallel in the execution context of the sampler if
+ * <i>multiThreaded</i> is set), the successors are scored by the model and
+ * the <i>beamSize</i> best states among the previous beam and its successors
+ * are kept for the next step. States with the same signature
+ * (e.g. the same variable assignment) are considered equivalent and kept only
+ * once. The prediction stops early when the beam converged, i.e. when a full
+ * step over all explorers did not change the states of the beam. </br>
+ * The generated chain contains the best state of the beam after each explorer
+ * step. Training is performed like in the DefaultSampler.
+ *
+ * @param <InstanceT>
+ * @param <StateT>
+ * @param <ResultT>
+ */
+public class BeamSampler<InstanceT extends Instance, StateT extends AbstractState<InstanceT>, ResultT>
+		extends DefaultSampler<InstanceT, StateT, ResultT> {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	private int beamSize;
+	private Function<StateT, ?> stateSignature;
+
+	/**
+	 * Creates a beam sampler that keeps the <i>beamSize</i> best states in
+	 * each step. Two states are considered equivalent if the given function
+	 * returns equal signatures (w.r.t. equals() and hashCode()) for them.
+	 *
+	 * @param model
+	 * @param objective
+	 * @param explorers
+	 * @param stoppingCriterion
+	 * @param beamSize
+	 * @param stateSignature
+	 */
+	public BeamSampler(Model<InstanceT, StateT> model, ObjectiveFunction<StateT, ResultT> objective,
+			List<Explorer<StateT>> explorers, StoppingCriterion<StateT> stoppingCriterion, int beamSize,
+			Function<StateT, ?> stateSignature) {
+		super(model, objective, explorers, stoppingCriterion);
+		setBeamSize(beamSize);
+		this.stateSignature = stateSignature;
+	}
+
+	/**
+	 * Creates a beam sampler with a simple step limit as the stopping
+	 * criterion.
+	 *
+	 * @param model
+	 * @param objective
+	 * @param explorers
+	 * @param samplingSteps
+	 * @param beamSize
+	 * @param stateSignature
+	 */
+	public BeamSampler(Model<InstanceT, StateT> model, ObjectiveFunction<StateT, ResultT> objective,
+			List<Explorer<StateT>> explorers, int samplingSteps, int beamSize, Function<StateT, ?> stateSignature) {
+		super(model, objective, explorers, samplingSteps);
+		setBeamSize(beamSize);
+		this.stateSignature = stateSignature;
+	}
+
+	public int getBeamSize() {
+		return beamSize;
+	}
+
+	public void setBeamSize(int beamSize) {
+		if (beamSize < 1) {
+			throw new IllegalArgumentException("The beam size must be positive.");
+		}
+		this.beamSize = beamSize;
+	}
+
+	public Function<StateT, ?> getStateSignature() {
+		return stateSignature;
+	}
+
+	public void setStateSignature(Function<StateT, ?> stateSignature) {
+		this.stateSignature = stateSignature;
+	}
+
+	@Override
+	public List<StateT> generateChain(StateT initialState) {
+		List<StateT> generatedChain = new ArrayList<>();
+		List<Explorer<StateT>> explorers = getExplorers();
+		List<StateT> beam = new ArrayList<>();
+		beam.add(initialState);
+		model.score(beam, initialState.getInstance(), initialState.getFactorGraph().getFactorPool());
+
+		int step = 0;
+		boolean converged = false;
+		do {
+			log.info("---------------------------");
+			Set<Object> previousSignatures = signatures(beam);
+			int e = 0;
+			for (Explorer<StateT> explorer : explorers) {
+				log.info("...............");
+				log.info("BEAM PREDICTION Step: %s; Explorer: %s", step + 1, explorer.getClass().getSimpleName());
+				for (StepCallback c : getStepCallbacks()) {
+					c.onStartStep(this, step, e, explorers.size(), initialState);
+				}
+				beam = performBeamStep(explorer, beam);
+				StateT bestState = beam.get(0);
+				generatedChain.add(bestState);
+				log.info("Best State:  %s", bestState);
+				for (StepCallback c : getStepCallbacks()) {
+					c.onEndStep(this, step, e, explorers.size(), initialState, bestState);
+				}
+				e++;
+			}
+			step++;
+			converged = previousSignatures.equals(signatures(beam));
+		} while (!converged && !getStoppingCriterion().checkCondition(generatedChain, step));
+		log.info("Stop beam search after step %s%s", step, converged ? " (converged)" : "");
+		getMetrics().counter("sampler.beam.steps").add(step);
+		return generatedChain;
+	}
+
+	/**
+	 * Expands all states of the beam with the given explorer, scores the
+	 * distinct successors and returns the best states of the previous beam and
+	 * its successors in descending order of their model score.
+	 *
+	 * @param explorer
+	 * @param beam
+	 * @return
+	 */
+	protected List<StateT> performBeamStep(Explorer<StateT> explorer, List<StateT> beam) {
+		Timer stepTimer = getMetrics().timer("sampler.step.beam");
+		long start = stepTimer.start();
+		List<StateT> successors = getExecutionContext().call(() -> Utils.getStream(beam, multiThreaded)
+				.flatMap(s -> getNextStates(explorer, s).stream()).collect(Collectors.toList()));
+		getMetrics().counter("sampler.states.explored").add(successors.size());
+
+		/*
+		 * The states of the previous beam are added first, so that an
+		 * equivalent successor does not replace an already scored state.
+		 */
+		Map<Object, StateT> distinctStates = new LinkedHashMap<>();
+		for (StateT state : beam) {
+			distinctStates.putIfAbsent(stateSignature.apply(state), state);
+		}
+		List<StateT> candidates = new ArrayList<>();
+		for (StateT state : successors) {
+			if (distinctStates.putIfAbsent(stateSignature.apply(state), state) == null) {
+				candidates.add(state);
+			}
+		}
+		getMetrics().counter("sampler.beam.duplicates").add(successors.size() - candidates.size());
+
+		if (!candidates.isEmpty()) {
+			StateT state = beam.get(0);
+			model.score(candidates, state.getInstance(), state.getFactorGraph().getFactorPool());
+		}
+
+		PriorityQueue<StateT> bestStates = new PriorityQueue<>(beamSize + 1,
+				Collections.reverseOrder(AbstractState.modelScoreComparator));
+		for (StateT state : distinctStates.values()) {
+			bestStates.add(state);
+			if (bestStates.size() > beamSize) {
+				bestStates.poll();
+			}
+		}
+		List<StateT> nextBeam = new ArrayList<>(bestStates);
+		nextBeam.sort(AbstractState.modelScoreComparator);
+		model.cleanUpFactorPool(beam.get(0).getFactorGraph().getFactorPool());
+		stepTimer.stop(start);
+		return nextBeam;
+	}
+
+	private Set<Object> signatures(List<StateT> beam) {
+		Set<Object> signatures = new HashSet<>();
+		for (StateT state : beam) {
+			signatures.add(stateSignature.apply(state));
+		}
+		return signatures;
+	}
+}
@@ -3,24 +3,25 @@ package sampling;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import corpus.Instance;
-import evaluation.TaggedTimer;
 import learning.Learner;
 import learning.Model;
 import learning.ObjectiveFunction;
 import learning.callbacks.StepCallback;
+import metrics.MetricsRegistry;
+import metrics.Timer;
 import sampling.samplingstrategies.AcceptStrategies;
 import sampling.samplingstrategies.AcceptStrategy;
 import sampling.samplingstrategies.SamplingStrategies;
 import sampling.samplingstrategies.SamplingStrategy;
 import sampling.stoppingcriterion.StepLimitCriterion;
 import sampling.stoppingcriterion.StoppingCriterion;
-import utility.Utils;
+import utility.ExecutionContext;
+import utility.ExecutionContexts;
 import variables.AbstractState;
 
 public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractState<InstanceT>, ResultT>
@@ -32,7 +33,7 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 	private List<Explorer<StateT>> explorers;
 	private StoppingCriterion<StateT> stoppingCriterion;
 
-	protected final boolean multiThreaded = false;
+	protected boolean multiThreaded = false;
 	/**
 	 * Defines the sampling strategy for the training phase. The test phase
 	 * currently always uses the greedy variant.
@@ -51,8 +52,18 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 	 */
 	private AcceptStrategy<StateT> predictionAcceptStrategy = AcceptStrategies.strictModelAccept();
 
+	/**
+	 * If positive, only this number of randomly selected successor states is
+	 * explored in each step for explorers that are LazyExplorers.
+	 */
+	private int proposalsPerStep = 0;
+
 	private List<StepCallback> stepCallbacks = new ArrayList<>();
 
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	private ExecutionContext executionContext = ExecutionContexts.common();
+
 	public List<StepCallback> getStepCallbacks() {
 		return stepCallbacks;
 	}
@@ -186,10 +197,13 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 			StateT currentState) {
 		log.debug("TRAINING Step:");
 		log.debug("Current State:\n%s", currentState);
+		Timer stepTimer = metrics.timer("sampler.step.training");
+		long start = stepTimer.start();
 		/**
 		 * Generate possible successor states.
 		 */
-		List<StateT> nextStates = explorer.getNextStates(currentState);
+		List<StateT> nextStates = getNextStates(explorer, currentState);
+		metrics.counter("sampler.states.explored").add(nextStates.size());
 		List<StateT> allStates = new ArrayList<>(nextStates);
 		if (nextStates.size() > 0) {
 			allStates.add(currentState);
@@ -259,6 +273,8 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 			// nextStates.size()));
 			// learner.update(currentState, nextStates);
 			learner.update(currentState, candidateState);
+			model.cleanUpFactorPool(currentState.getFactorGraph().getFactorPool());
+			stepTimer.stop(start);
 			/**
 			 * Recompute model score to reflect last update in score.
 			 */
@@ -305,10 +321,13 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 	 */
 	protected StateT performPredictionStep(Explorer<StateT> explorer, StateT currentState) {
 		log.debug("PREDICTION:");
+		Timer stepTimer = metrics.timer("sampler.step.prediction");
+		long start = stepTimer.start();
 		/**
 		 * Generate possible successor states.
 		 */
-		List<StateT> nextStates = explorer.getNextStates(currentState);
+		List<StateT> nextStates = getNextStates(explorer, currentState);
+		metrics.counter("sampler.states.explored").add(nextStates.size());
 		if (nextStates.size() > 0) {
 			List<StateT> allStates = new ArrayList<>(nextStates);
 			allStates.add(currentState);
@@ -350,6 +369,8 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 			// }
 			currentState = predictionAcceptStrategy.isAccepted(candidateState, currentState) ? candidateState
 					: currentState;
+			model.cleanUpFactorPool(currentState.getFactorGraph().getFactorPool());
+			stepTimer.stop(start);
 			return currentState;
 		} else {
 			return currentState;
@@ -391,6 +412,23 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 	// TaggedTimer.stop(scID);
 	// }
 
+	/**
+	 * Returns the successor states of the given state. If a number of
+	 * proposals per step is set and the explorer is a LazyExplorer, only a
+	 * random subset of its proposals is materialized.
+	 * 
+	 * @param explorer
+	 * @param currentState
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<StateT> getNextStates(Explorer<StateT> explorer, StateT currentState) {
+		if (proposalsPerStep > 0 && explorer instanceof LazyExplorer) {
+			return SamplingUtils.sampleProposals((LazyExplorer<StateT>) explorer, currentState, proposalsPerStep);
+		}
+		return explorer.getNextStates(currentState);
+	}
+
 	/**
 	 * Computes the objective scores for each of the given states. The
 	 * <i>multiThreaded</i> flag determines if the computation is performed in
@@ -401,11 +439,67 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 	 * @param nextStates
 	 */
 	protected void scoreWithObjective(List<StateT> allStates, ResultT goldResult) {
-		long scID = TaggedTimer.start("OBJ-SCORE");
+		Timer objectiveTimer = metrics.timer("sampler.objective");
+		long start = objectiveTimer.start();
 		log.debug("Score %s states according to objective...", allStates.size() + 1);
-		Stream<StateT> stream = Utils.getStream(allStates, multiThreaded);
-		stream.forEach(s -> objective.score(s, goldResult));
-		TaggedTimer.stop(scID);
+		if (multiThreaded) {
+			executionContext.forEach(allStates, s -> objective.score(s, goldResult));
+		} else {
+			allStates.forEach(s -> objective.score(s, goldResult));
+		}
+		objectiveTimer.stop(start);
+	}
+
+	public boolean isMultiThreaded() {
+		return multiThreaded;
+	}
+
+	/**
+	 * If set to true, the objective scores of the generated states are
+	 * computed in parallel.
+	 * 
+	 * @param multiThreaded
+	 */
+	public void setMultiThreaded(boolean multiThreaded) {
+		this.multiThreaded = multiThreaded;
+	}
+
+	public ExecutionContext getExecutionContext() {
+		return executionContext;
+	}
+
+	/**
+	 * Sets the context in which the objective scores of the generated states
+	 * are computed if this sampler is multi-threaded. Each state is scored as
+	 * an independent task of the context, so that a context with virtual
+	 * threads can be used for objective functions that wait for external
+	 * resources (see ExecutionContexts). The model uses its own context (see
+	 * Model.setExecutionContext()).
+	 * 
+	 * @param executionContext
+	 */
+	public void setExecutionContext(ExecutionContext executionContext) {
+		this.executionContext = executionContext;
+	}
+
+	/**
+	 * Returns the registry in which this sampler records the number of
+	 * explored states and the duration of the sampling steps.
+	 * 
+	 * @return
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the registry in which the metrics of this sampler are recorded. By
+	 * default, the shared registry MetricsRegistry.getDefault() is used.
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
 	}
 
 	protected Model<?, StateT> getModel() {
@@ -488,6 +582,23 @@ public class DefaultSampler<InstanceT extends Instance, StateT extends AbstractS
 		this.predictionAcceptStrategy = acceptStrategy;
 	}
 
+	public int getProposalsPerStep() {
+		return proposalsPerStep;
+	}
+
+	/**
+	 * Sets the number of successor states that are explored in each step. For
+	 * explorers that implement LazyExplorer, a random subset of this size is
+	 * drawn from all proposals and only these proposals are materialized.
+	 * Other explorers always return all successor states. A value of 0
+	 * explores all successor states.
+	 * 
+	 * @param proposalsPerStep
+	 */
+	public void setProposalsPerStep(int proposalsPerStep) {
+		this.proposalsPerStep = proposalsPerStep;
+	}
+
 	public List<Explorer<StateT>> getExplorers() {
 		return explorers;
 	}
@@ -0,0 +1,65 @@
+package sampling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import variables.AbstractState;
+
+/**
+ * An explorer that enumerates the possible successor states of a state as
+ * indexed proposals instead of materialized states. A proposal describes a
+ * change of the current state and creates the successor state only when it
+ * is materialized. This allows samplers to explore only a random subset of
+ * all successors (see <b>SamplingUtils.sampleProposals()</b> and
+ * <b>DefaultSampler.setProposalsPerStep()</b>) without creating the other
+ * states. </br>
+ * The proposals of a state must not change between calls of
+ * <b>getNumberOfProposals()</b> and <b>getProposal()</b>.
+ *
+ * @param <StateT>
+ */
+public interface LazyExplorer<StateT extends AbstractState<?>> extends Explorer<StateT> {
+
+	/**
+	 * Returns the number of proposals for the given state.
+	 *
+	 * @param currentState
+	 * @return
+	 */
+	public int getNumberOfProposals(StateT currentState);
+
+	/**
+	 * Returns the proposal with the given index (0 <= index <
+	 * getNumberOfProposals()) for the given state.
+	 *
+	 * @param currentState
+	 * @param index
+	 * @return
+	 */
+	public Proposal<StateT> getProposal(StateT currentState, int index);
+
+	/**
+	 * Returns a lazy stream of all proposals for the given state.
+	 *
+	 * @param currentState
+	 * @return
+	 */
+	public default Stream<Proposal<StateT>> getProposals(StateT currentState) {
+		return IntStream.range(0, getNumberOfProposals(currentState)).mapToObj(i -> getProposal(currentState, i));
+	}
+
+	/**
+	 * Materializes all proposals for the given state.
+	 */
+	@Override
+	public default List<StateT> getNextStates(StateT currentState) {
+		int numberOfProposals = getNumberOfProposals(currentState);
+		List<StateT> nextStates = new ArrayList<>(numberOfProposals);
+		for (int i = 0; i < numberOfProposals; i++) {
+			nextStates.add(getProposal(currentState, i).materialize());
+		}
+		return nextStates;
+	}
+}
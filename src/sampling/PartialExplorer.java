@@ -0,0 +1,55 @@
+package sampling;
+
+import java.util.List;
+import java.util.Random;
+
+import variables.AbstractState;
+
+/**
+ * An explorer that returns a random subset of at most <i>k</i> of the
+ * successor states of a LazyExplorer. Only the selected proposals are
+ * materialized, so that each step creates O(k) instead of all states.
+ *
+ * @param <StateT>
+ */
+public class PartialExplorer<StateT extends AbstractState<?>> implements Explorer<StateT> {
+
+	private LazyExplorer<StateT> explorer;
+	private int k;
+	private Random random;
+
+	/**
+	 * Creates an explorer that samples <i>k</i> proposals of the given
+	 * explorer with the given random generator.
+	 *
+	 * @param explorer
+	 * @param k
+	 * @param random
+	 */
+	public PartialExplorer(LazyExplorer<StateT> explorer, int k, Random random) {
+		if (k < 1) {
+			throw new IllegalArgumentException("At least one proposal per step is required.");
+		}
+		this.explorer = explorer;
+		this.k = k;
+		this.random = random;
+	}
+
+	public PartialExplorer(LazyExplorer<StateT> explorer, int k) {
+		this(explorer, k, new Random());
+	}
+
+	@Override
+	public List<StateT> getNextStates(StateT currentState) {
+		return SamplingUtils.sampleProposals(explorer, currentState, k, random);
+	}
+
+	public LazyExplorer<StateT> getExplorer() {
+		return explorer;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+}
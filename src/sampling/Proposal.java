@@ -0,0 +1,23 @@
+package sampling;
+
+import variables.AbstractState;
+
+/**
+ * A possible successor state that was suggested by a LazyExplorer but not yet
+ * created. The state is only created (materialized) if the proposal is
+ * selected, so that unselected proposals do not need to copy the current
+ * state.
+ *
+ * @param <StateT>
+ */
+@FunctionalInterface
+public interface Proposal<StateT extends AbstractState<?>> {
+
+	/**
+	 * Creates the proposed successor state.
+	 *
+	 * @return
+	 */
+	public StateT materialize();
+
+}
@@ -1,9 +1,12 @@
 package sampling;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.Function;
 
 import variables.AbstractState;
@@ -139,4 +142,60 @@ public class SamplingUtils {
 		return copy.subList(0, Math.min(n, copy.size()));
 
 	}
+
+	/**
+	 * Materializes a uniformly drawn random subset of <i>k</i> proposals of
+	 * the given explorer for the given state (or all proposals, if there are
+	 * at most <i>k</i>). The selected proposals are materialized in the order
+	 * of their indices. Only O(k) proposals and states are created.
+	 * 
+	 * @param explorer
+	 * @param currentState
+	 * @param k
+	 * @param random
+	 * @return
+	 */
+	public static <StateT extends AbstractState<?>> List<StateT> sampleProposals(LazyExplorer<StateT> explorer,
+			StateT currentState, int k, Random random) {
+		int n = explorer.getNumberOfProposals(currentState);
+		if (n <= k) {
+			return explorer.getNextStates(currentState);
+		}
+		/*
+		 * Robert Floyd's algorithm draws k distinct indices with k random
+		 * numbers.
+		 */
+		Set<Integer> selected = new HashSet<>(2 * k);
+		for (int j = n - k; j < n; j++) {
+			int index = random.nextInt(j + 1);
+			if (!selected.add(index)) {
+				selected.add(j);
+			}
+		}
+		int[] indices = new int[k];
+		int i = 0;
+		for (int index : selected) {
+			indices[i++] = index;
+		}
+		Arrays.sort(indices);
+		List<StateT> nextStates = new ArrayList<>(k);
+		for (int index : indices) {
+			nextStates.add(explorer.getProposal(currentState, index).materialize());
+		}
+		return nextStates;
+	}
+
+	/**
+	 * Like <b>sampleProposals(explorer, currentState, k, random)</b> but uses
+	 * the shared random generator of this class.
+	 * 
+	 * @param explorer
+	 * @param currentState
+	 * @param k
+	 * @return
+	 */
+	public static <StateT extends AbstractState<?>> List<StateT> sampleProposals(LazyExplorer<StateT> explorer,
+			StateT currentState, int k) {
+		return sampleProposals(explorer, currentState, k, rand);
+	}
 }
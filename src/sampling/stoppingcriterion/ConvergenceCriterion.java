@@ -0,0 +1,241 @@
+package sampling.stoppingcriterion;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import metrics.MetricsRegistry;
+import variables.AbstractState;
+
+/**
+ * This criterion stops the sampling chain as soon as it converged or if a
+ * maximum number of steps is reached. The chain is considered to be converged
+ * if one of the following conditions holds:
+ * <ul>
+ * <li>the last <i>maxRejections</i> proposals were rejected, i.e. the chain
+ * contains the same state object <i>maxRejections</i> times in a row after
+ * its first occurrence,</li>
+ * <li>the model scores of the last <i>plateauSteps</i> + 1 states of the
+ * chain differ by at most <i>epsilon</i> (model score plateau),</li>
+ * <li>the last state is equivalent to an earlier, different state of the
+ * chain w.r.t. the state signature, i.e. the chain revisits a state (only if a
+ * state signature is set).</li>
+ * </ul>
+ * A value of 0 disables the respective condition. </br>
+ * A criterion can be shared by several chains that are sampled concurrently,
+ * as long as each chain is checked by a single thread (as in the samplers).
+ * The step at which a chain was stopped and the reason are recorded in the
+ * histogram <i>sampler.convergence.step</i> and the counters
+ * <i>sampler.convergence.&lt;reason&gt;</i> and are available to the thread
+ * that sampled the chain via <b>getStopStep()</b> and
+ * <b>getStopReason()</b>.
+ *
+ * @param <StateT>
+ */
+public class ConvergenceCriterion<StateT extends AbstractState<?>> implements StoppingCriterion<StateT> {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	public enum StopReason {
+		STEP_LIMIT, REJECTIONS, PLATEAU, REVISIT
+	}
+
+	private int maxSteps;
+	private int maxRejections;
+	private int plateauSteps;
+	private double epsilon;
+	private Function<StateT, ?> stateSignature;
+
+	private MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+	/**
+	 * The progress of the chain that is currently checked by a thread.
+	 */
+	private static class ChainState {
+		private final WeakReference<List<?>> chain;
+		/**
+		 * The number of states of the chain whose signatures were collected.
+		 */
+		private int checkedStates;
+		private final Set<Object> signatures = new HashSet<>();
+		private int stopStep = -1;
+		private StopReason stopReason;
+
+		private ChainState(List<?> chain) {
+			this.chain = new WeakReference<>(chain);
+		}
+	}
+
+	private final ThreadLocal<ChainState> chainStates = new ThreadLocal<>();
+
+	/**
+	 * Creates a criterion that stops after <i>maxRejections</i> consecutive
+	 * rejected proposals, after a model score plateau of <i>plateauSteps</i>
+	 * steps within <i>epsilon</i>, or after <i>maxSteps</i> steps.
+	 *
+	 * @param maxSteps
+	 * @param maxRejections
+	 * @param plateauSteps
+	 * @param epsilon
+	 */
+	public ConvergenceCriterion(int maxSteps, int maxRejections, int plateauSteps, double epsilon) {
+		if (maxSteps < 1) {
+			throw new IllegalArgumentException("The maximum number of steps must be positive.");
+		}
+		this.maxSteps = maxSteps;
+		this.maxRejections = maxRejections;
+		this.plateauSteps = plateauSteps;
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Creates a criterion that only stops after <i>maxRejections</i>
+	 * consecutive rejected proposals or after <i>maxSteps</i> steps.
+	 *
+	 * @param maxSteps
+	 * @param maxRejections
+	 */
+	public ConvergenceCriterion(int maxSteps, int maxRejections) {
+		this(maxSteps, maxRejections, 0, 0);
+	}
+
+	/**
+	 * Enables the detection of revisited states. Two states are considered
+	 * equivalent if the given function returns equal signatures for them.
+	 * Pass null to disable this condition.
+	 *
+	 * @param stateSignature
+	 */
+	public void setStateSignature(Function<StateT, ?> stateSignature) {
+		this.stateSignature = stateSignature;
+	}
+
+	public Function<StateT, ?> getStateSignature() {
+		return stateSignature;
+	}
+
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the registry in which the stops of the chains are recorded. By
+	 * default, the shared registry MetricsRegistry.getDefault() is used.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(MetricsRegistry metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the step at which this criterion stopped the last chain of the
+	 * current thread or -1 if the chain was not stopped yet.
+	 *
+	 * @return
+	 */
+	public int getStopStep() {
+		ChainState chainState = chainStates.get();
+		return chainState != null ? chainState.stopStep : -1;
+	}
+
+	/**
+	 * Returns the reason why this criterion stopped the last chain of the
+	 * current thread or null if the chain was not stopped yet.
+	 *
+	 * @return
+	 */
+	public StopReason getStopReason() {
+		ChainState chainState = chainStates.get();
+		return chainState != null ? chainState.stopReason : null;
+	}
+
+	private ChainState getChainState(List<StateT> chain) {
+		ChainState chainState = chainStates.get();
+		if (chainState == null || chainState.chain.get() != chain || chainState.checkedStates > chain.size()) {
+			chainState = new ChainState(chain);
+			chainStates.set(chainState);
+		}
+		return chainState;
+	}
+
+	@Override
+	public boolean checkCondition(List<StateT> chain, int step) {
+		ChainState chainState = getChainState(chain);
+		StopReason reason = null;
+		if (maxSteps <= step) {
+			reason = StopReason.STEP_LIMIT;
+		} else if (maxRejections > 0 && countRejections(chain) >= maxRejections) {
+			reason = StopReason.REJECTIONS;
+		} else if (plateauSteps > 0 && isPlateau(chain)) {
+			reason = StopReason.PLATEAU;
+		} else if (stateSignature != null && isRevisit(chain, chainState)) {
+			reason = StopReason.REVISIT;
+		}
+		if (reason == null) {
+			return false;
+		}
+		chainState.stopStep = step;
+		chainState.stopReason = reason;
+		metrics.histogram("sampler.convergence.step").record(step);
+		metrics.counter("sampler.convergence." + reason.name().toLowerCase()).increment();
+		log.debug("Stop chain at step %s (%s).", step, reason);
+		return true;
+	}
+
+	private int countRejections(List<StateT> chain) {
+		int rejections = 0;
+		for (int i = chain.size() - 1; i > 0 && chain.get(i) == chain.get(i - 1); i--) {
+			rejections++;
+		}
+		return rejections;
+	}
+
+	private boolean isPlateau(List<StateT> chain) {
+		if (chain.size() <= plateauSteps) {
+			return false;
+		}
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = chain.size() - 1 - plateauSteps; i < chain.size(); i++) {
+			double score = chain.get(i).getModelScore();
+			min = Math.min(min, score);
+			max = Math.max(max, score);
+		}
+		return max - min <= epsilon;
+	}
+
+	/**
+	 * Collects the signatures of the states that were added to the chain since
+	 * the last check, so that each state is only compared once.
+	 */
+	private boolean isRevisit(List<StateT> chain, ChainState chainState) {
+		int last = chain.size() - 1;
+		for (int i = chainState.checkedStates; i < last; i++) {
+			addSignature(chain, i, chainState);
+		}
+		chainState.checkedStates = Math.max(chainState.checkedStates, last);
+		/*
+		 * Only an accepted proposal can lead to a revisited state.
+		 */
+		if (last < 1 || chain.get(last) == chain.get(last - 1)) {
+			return false;
+		}
+		return chainState.signatures.contains(stateSignature.apply(chain.get(last)));
+	}
+
+	/**
+	 * Adds the signature of the i-th state of the chain if it differs from the
+	 * previous state, i.e. if it was accepted.
+	 */
+	private void addSignature(List<StateT> chain, int i, ChainState chainState) {
+		if (i == 0 || chain.get(i) != chain.get(i - 1)) {
+			chainState.signatures.add(stateSignature.apply(chain.get(i)));
+		}
+	}
+}
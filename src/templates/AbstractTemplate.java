@@ -1,7 +1,10 @@
 package templates;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -9,8 +12,11 @@ import org.apache.logging.log4j.Logger;
 import corpus.Instance;
 import factors.Factor;
 import factors.FactorPattern;
+import learning.DenseVector;
+import learning.FeatureHasher;
 import learning.Vector;
 import variables.AbstractState;
+import variables.AbstractVariable;
 
 public abstract class AbstractTemplate<InstanceT extends Instance, StateT extends AbstractState<InstanceT>, FactorPatternT extends FactorPattern>
 		implements Serializable {
@@ -24,6 +30,29 @@ public abstract class AbstractTemplate<InstanceT extends Instance, StateT extend
 	 */
 	protected Vector weights = new Vector();
 
+	/**
+	 * Guards updates of the weights if several training chains update this
+	 * template concurrently (see ParallelTrainer). If null, updates are not
+	 * synchronized.
+	 */
+	private transient Lock weightsLock;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<AbstractTemplate> WEIGHTS_VERSION = AtomicLongFieldUpdater
+			.newUpdater(AbstractTemplate.class, "weightsVersion");
+	/**
+	 * Incremented whenever the weights of this template change, so that
+	 * cached dot products of factors with these weights can be invalidated
+	 * (see Factor.dotProduct()).
+	 */
+	private transient volatile long weightsVersion;
+
+	/**
+	 * If not null, the feature names of this template are hashed into a fixed
+	 * number of buckets (see FeatureHasher).
+	 */
+	private FeatureHasher featureHasher;
+
 	/**
 	 * Updates the weight of the given feature by adding the given alpha value.
 	 * 
@@ -33,14 +62,124 @@ public abstract class AbstractTemplate<InstanceT extends Instance, StateT extend
 	 */
 	public void update(String feature, double update) {
 		weights.addToValue(feature, update);
+		weightsChanged();
+	}
+
+	/**
+	 * Updates the weight of the feature with the given index (see
+	 * FeatureDictionary) by adding the given update value.
+	 * 
+	 * @param feature
+	 * @param update
+	 */
+	public void update(int feature, double update) {
+		weights.addToValue(feature, update);
+		weightsChanged();
+	}
+
+	/**
+	 * Returns the current version of the weights of this template. The version
+	 * changes with every update of the weights.
+	 * 
+	 * @return
+	 */
+	public long getWeightsVersion() {
+		return weightsVersion;
+	}
+
+	/**
+	 * Increments the version of the weights of this template. This is done
+	 * automatically by <b>update()</b> and <b>setWeights()</b>, but needs to
+	 * be called explicitly if the weight vector is modified directly.
+	 */
+	public void weightsChanged() {
+		WEIGHTS_VERSION.incrementAndGet(this);
+	}
+
+	public void setWeightsLock(Lock weightsLock) {
+		this.weightsLock = weightsLock;
+	}
+
+	public Lock getWeightsLock() {
+		return weightsLock;
+	}
+
+	/**
+	 * Acquires the lock that guards updates of the weights of this template,
+	 * if any. Learners should call this method before they update the weights
+	 * of this template and release the lock with <b>unlockWeights()</b>
+	 * afterwards.
+	 */
+	public void lockWeights() {
+		Lock lock = weightsLock;
+		if (lock != null) {
+			lock.lock();
+		}
+	}
+
+	public void unlockWeights() {
+		Lock lock = weightsLock;
+		if (lock != null) {
+			lock.unlock();
+		}
 	}
 
 	public Vector getWeights() {
 		return weights;
 	}
 
+	/**
+	 * Sets the weights of this template. If this template currently uses a
+	 * DenseVector to store its weights and a plain Vector is given, its values
+	 * are copied into the existing dense store so that the (off-heap) backend
+	 * is kept. To switch the backend, e.g. to enable dense weights for a
+	 * template, pass a DenseVector (or any other subclass of Vector) to this
+	 * method.
+	 * 
+	 * @param weights
+	 */
 	public void setWeights(Vector weights) {
-		this.weights = weights;
+		if (this.weights instanceof DenseVector && weights.getClass() == Vector.class) {
+			((DenseVector) this.weights).assign(weights);
+		} else {
+			this.weights = weights;
+		}
+		if (featureHasher != null) {
+			this.weights.setFeatureHasher(featureHasher);
+		}
+		weightsChanged();
+	}
+
+	public FeatureHasher getFeatureHasher() {
+		return featureHasher;
+	}
+
+	/**
+	 * Enables feature hashing for this template: all feature names of its
+	 * factors and weights are mapped to the buckets of the given hasher, which
+	 * bounds the number of weights of this template by the number of buckets.
+	 * This should be set before the template is trained, since existing
+	 * weights are not re-hashed. Pass null to disable feature hashing.
+	 * 
+	 * @param featureHasher
+	 */
+	public void setFeatureHasher(FeatureHasher featureHasher) {
+		if (featureHasher != null && weights.size() > 0) {
+			log.warn("Template %s already has %s weights that are not hashed.", getClass().getSimpleName(),
+					weights.size());
+		}
+		this.featureHasher = featureHasher;
+		weights.setFeatureHasher(featureHasher);
+	}
+
+	/**
+	 * Enables signed feature hashing with the given number of buckets for this
+	 * template (see <b>setFeatureHasher()</b>).
+	 * 
+	 * @param numberOfBuckets
+	 */
+	public void enableFeatureHashing(int numberOfBuckets) {
+		setFeatureHasher(new FeatureHasher(getClass().getSimpleName(), numberOfBuckets));
 	}
 
 	/**
@@ -56,6 +195,29 @@ public abstract class AbstractTemplate<InstanceT extends Instance, StateT extend
 	 */
 	public abstract List<FactorPatternT> generateFactorPatterns(StateT state);
 
+	/**
+	 * Returns the factor patterns for the given state that read at least one
+	 * of the given variables, which were reported as changed since the state
+	 * was copied from its parent (see <b>AbstractState.markAsChanged()</b>),
+	 * or null if this template can only generate all patterns of a state. The
+	 * Model combines the returned patterns with the patterns of the parent
+	 * state that do not read any of the changed variables. </br>
+	 * Templates should only override this method if their patterns are local:
+	 * a change of a variable must not add or remove patterns that do not read
+	 * this variable and all patterns must declare their variables (see
+	 * <b>FactorPattern.getVariableIDs()</b>). Changed variables that are no
+	 * longer part of the state must be skipped. By default, this method
+	 * returns null.
+	 * 
+	 * @param state
+	 * @param changedVariables
+	 * @return
+	 */
+	public List<FactorPatternT> generateFactorPatterns(StateT state,
+			Collection<AbstractVariable> changedVariables) {
+		return null;
+	}
+
 	/**
 	 * This method receives the previously created "empty" factor patterns and
 	 * computes the features for this factor. For this, each previously created
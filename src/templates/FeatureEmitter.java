@@ -0,0 +1,98 @@
+package templates;
+
+import learning.Vector;
+
+/**
+ * Sets the features of a factor by their pre-registered keys (see
+ * <b>FeatureEmittingTemplate.registerFeature()</b>) instead of their names,
+ * so that computing a factor neither creates Strings nor boxes values:
+ * 
+ * <pre>
+ * private final int isDigit = registerFeature("CHAR@", "_IS_DIGIT");
+ * ...
+ * features.emit(isDigit, relativePosition, Character.isDigit(c));
+ * </pre>
+ * 
+ * The resulting feature vector is the same as if the features were set by
+ * their names, i.e. the values of hashed features are added to their buckets
+ * (see FeatureHasher) and features with a value of 0 are skipped. An emitter
+ * is reused for several factors and must only be used by one thread at a
+ * time.
+ */
+public class FeatureEmitter {
+
+	private final FeatureKeys keys;
+	private Vector features;
+
+	public FeatureEmitter(FeatureKeys keys) {
+		this.keys = keys;
+	}
+
+	/**
+	 * Directs all following features to the given feature vector.
+	 *
+	 * @param features
+	 * @return this emitter
+	 */
+	public FeatureEmitter reset(Vector features) {
+		this.features = features;
+		return this;
+	}
+
+	public Vector getFeatureVector() {
+		return features;
+	}
+
+	/**
+	 * Sets the value of the single feature with the given key.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void emit(int key, double value) {
+		set(keys.resolve(key), value);
+	}
+
+	public void emit(int key, boolean flag) {
+		set(keys.resolve(key), flag ? 1.0 : 0.0);
+	}
+
+	/**
+	 * Sets the value of the feature of the given feature family and argument.
+	 *
+	 * @param key
+	 * @param argument
+	 * @param value
+	 */
+	public void emit(int key, int argument, double value) {
+		set(keys.resolve(key, argument), value);
+	}
+
+	public void emit(int key, int argument, boolean flag) {
+		set(keys.resolve(key, argument), flag ? 1.0 : 0.0);
+	}
+
+	/**
+	 * Sets the value of a feature that was not registered. This creates the
+	 * feature name and should be avoided on hot paths.
+	 *
+	 * @param feature
+	 * @param value
+	 */
+	public void emit(String feature, double value) {
+		features.set(feature, value);
+	}
+
+	private void set(int resolved, double value) {
+		if (value == 0) {
+			return;
+		}
+		if (features.getFeatureHasher() == null) {
+			features.set(resolved - 1, value);
+		} else if (resolved > 0) {
+			features.addToValue(resolved - 1, value);
+		} else {
+			features.addToValue(-resolved - 1, -value);
+		}
+	}
+}
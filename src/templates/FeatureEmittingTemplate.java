@@ -0,0 +1,99 @@
+package templates;
+
+import corpus.Instance;
+import factors.Factor;
+import factors.FactorPattern;
+import learning.FeatureHasher;
+import variables.AbstractState;
+
+/**
+ * Base class for templates that compute the features of their factors without
+ * creating feature names. Such a template registers its features once (see
+ * <b>registerFeature()</b>) and sets them via a FeatureEmitter in
+ * <b>computeFactor(instance, factor, features)</b>.
+ */
+public abstract class FeatureEmittingTemplate<InstanceT extends Instance, StateT extends AbstractState<InstanceT>, FactorPatternT extends FactorPattern>
+		extends AbstractTemplate<InstanceT, StateT, FactorPatternT> {
+
+	/**
+	 * The feature keys that were registered with <b>registerFeature()</b>.
+	 */
+	private final FeatureKeys featureKeys = new FeatureKeys();
+	private transient ThreadLocal<FeatureEmitter> featureEmitters;
+
+	@Override
+	public void setFeatureHasher(FeatureHasher featureHasher) {
+		super.setFeatureHasher(featureHasher);
+		featureKeys.setFeatureHasher(featureHasher);
+	}
+
+	@Override
+	public void computeFactor(InstanceT instance, Factor<FactorPatternT> factor) {
+		computeFactor(instance, factor, getFeatureEmitter(factor));
+	}
+
+	/**
+	 * Computes the features of the given factor like <b>computeFactor(instance,
+	 * factor)</b> but sets them via the given emitter, which writes into the
+	 * factor's feature vector and accepts the keys that were registered with
+	 * <b>registerFeature()</b>.
+	 *
+	 * @param instance
+	 * @param factor
+	 * @param features
+	 */
+	public abstract void computeFactor(InstanceT instance, Factor<FactorPatternT> factor, FeatureEmitter features);
+
+	/**
+	 * Registers a single feature for the use with a FeatureEmitter and
+	 * returns its key. Keys should be registered when the template is
+	 * created, e.g. in a field initializer.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	protected int registerFeature(String feature) {
+		return featureKeys.register(feature);
+	}
+
+	/**
+	 * Registers a family of features with the names
+	 * <i>&lt;prefix&gt;&lt;argument&gt;&lt;suffix&gt;</i> for an int argument
+	 * and returns its key (see FeatureEmitter).
+	 *
+	 * @param prefix
+	 * @param suffix
+	 * @return
+	 */
+	protected int registerFeature(String prefix, String suffix) {
+		return featureKeys.register(prefix, suffix);
+	}
+
+	public FeatureKeys getFeatureKeys() {
+		return featureKeys;
+	}
+
+	/**
+	 * Returns an emitter of the current thread that writes into the feature
+	 * vector of the given factor. The emitter is reused for all factors that
+	 * are computed by this thread.
+	 *
+	 * @param factor
+	 * @return
+	 */
+	public FeatureEmitter getFeatureEmitter(Factor<?> factor) {
+		ThreadLocal<FeatureEmitter> emitters = featureEmitters;
+		if (emitters == null) {
+			emitters = initializeFeatureEmitters();
+		}
+		return emitters.get().reset(factor.getFeatureVector());
+	}
+
+	private synchronized ThreadLocal<FeatureEmitter> initializeFeatureEmitters() {
+		if (featureEmitters == null) {
+			featureEmitters = ThreadLocal.withInitial(() -> new FeatureEmitter(featureKeys));
+		}
+		return featureEmitters;
+	}
+
+}
@@ -0,0 +1,196 @@
+package templates;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import learning.FeatureDictionary;
+import learning.FeatureHasher;
+
+/**
+ * The feature keys that a template registered for the allocation free
+ * computation of its factors (see FeatureEmitter). A key is a template-local
+ * id that stands either for a single feature name or for a family of feature
+ * names <i>&lt;prefix&gt;&lt;argument&gt;&lt;suffix&gt;</i> with an int
+ * argument. </br>
+ * A key is resolved to the index of its feature in the FeatureDictionary (or
+ * of its bucket, if the template uses a FeatureHasher) the first time it is
+ * used with a certain argument. Afterwards, the resolved index is looked up in
+ * an int array, so that no Strings are created. Resolved indices are encoded
+ * as <i>sign * (index + 1)</i> with the sign of a hashed feature (see
+ * FeatureHasher.getSign()).
+ */
+public class FeatureKeys implements Serializable {
+
+	/**
+	 * Arguments with an absolute value of at least this limit are cached in a
+	 * map instead of an array.
+	 */
+	private static final int MAX_DENSE_ARGUMENT = 1 << 20;
+
+	private static class Key implements Serializable {
+		private final String prefix;
+		/**
+		 * Null for a single feature.
+		 */
+		private final String suffix;
+
+		private transient volatile int resolved;
+		private transient volatile int[] positiveArguments;
+		private transient volatile int[] negativeArguments;
+		private transient volatile Map<Integer, Integer> sparseArguments;
+
+		public Key(String prefix, String suffix) {
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+		private void clear() {
+			resolved = 0;
+			positiveArguments = null;
+			negativeArguments = null;
+			sparseArguments = null;
+		}
+	}
+
+	private final List<Key> keys = new ArrayList<>();
+	private volatile FeatureHasher featureHasher;
+
+	/**
+	 * Registers a single feature and returns its key.
+	 *
+	 * @param feature
+	 * @return
+	 */
+	public synchronized int register(String feature) {
+		keys.add(new Key(feature, null));
+		return keys.size() - 1;
+	}
+
+	/**
+	 * Registers a family of features with the names
+	 * <i>&lt;prefix&gt;&lt;argument&gt;&lt;suffix&gt;</i> and returns its key.
+	 *
+	 * @param prefix
+	 * @param suffix
+	 * @return
+	 */
+	public synchronized int register(String prefix, String suffix) {
+		keys.add(new Key(prefix, suffix));
+		return keys.size() - 1;
+	}
+
+	public int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Sets the feature hasher that is used to resolve the keys. All cached
+	 * indices are discarded.
+	 *
+	 * @param featureHasher
+	 */
+	public synchronized void setFeatureHasher(FeatureHasher featureHasher) {
+		this.featureHasher = featureHasher;
+		for (Key key : keys) {
+			key.clear();
+		}
+	}
+
+	/**
+	 * Returns the name of the feature of the given key and argument. The
+	 * argument is ignored for single features.
+	 *
+	 * @param key
+	 * @param argument
+	 * @return
+	 */
+	public String getFeatureName(int key, int argument) {
+		Key k = keys.get(key);
+		return k.suffix == null ? k.prefix : k.prefix + argument + k.suffix;
+	}
+
+	/**
+	 * Returns the encoded index of the given single feature.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public int resolve(int key) {
+		Key k = keys.get(key);
+		int resolved = k.resolved;
+		if (resolved == 0) {
+			resolved = resolve(k.prefix);
+			k.resolved = resolved;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Returns the encoded index of the feature of the given family and
+	 * argument.
+	 *
+	 * @param key
+	 * @param argument
+	 * @return
+	 */
+	public int resolve(int key, int argument) {
+		Key k = keys.get(key);
+		if (k.suffix == null) {
+			throw new IllegalArgumentException(String.format("Feature key %s (%s) does not take an argument.", key,
+					k.prefix));
+		}
+		if (argument >= MAX_DENSE_ARGUMENT || argument <= -MAX_DENSE_ARGUMENT) {
+			Map<Integer, Integer> sparseArguments = k.sparseArguments;
+			Integer resolved = sparseArguments != null ? sparseArguments.get(argument) : null;
+			return resolved != null ? resolved : resolveSparse(k, argument);
+		}
+		int[] cache = argument >= 0 ? k.positiveArguments : k.negativeArguments;
+		int i = argument >= 0 ? argument : -argument - 1;
+		if (cache != null && i < cache.length && cache[i] != 0) {
+			return cache[i];
+		}
+		return resolveDense(k, argument);
+	}
+
+	private synchronized int resolveDense(Key k, int argument) {
+		int i = argument >= 0 ? argument : -argument - 1;
+		int[] cache = argument >= 0 ? k.positiveArguments : k.negativeArguments;
+		if (cache == null || i >= cache.length) {
+			int length = cache == null ? 16 : cache.length;
+			while (length <= i) {
+				length <<= 1;
+			}
+			cache = cache == null ? new int[length] : Arrays.copyOf(cache, length);
+		}
+		if (cache[i] == 0) {
+			cache[i] = resolve(k.prefix + argument + k.suffix);
+		}
+		if (argument >= 0) {
+			k.positiveArguments = cache;
+		} else {
+			k.negativeArguments = cache;
+		}
+		return cache[i];
+	}
+
+	private synchronized int resolveSparse(Key k, int argument) {
+		if (k.sparseArguments == null) {
+			k.sparseArguments = new ConcurrentHashMap<>();
+		}
+		return k.sparseArguments.computeIfAbsent(argument, a -> resolve(k.prefix + a + k.suffix));
+	}
+
+	private int resolve(String feature) {
+		FeatureHasher hasher = featureHasher;
+		if (hasher != null) {
+			int hash = hasher.hash(feature);
+			int index = hasher.getIndex(hash, feature) + 1;
+			return hasher.getSign(hash) < 0 ? -index : index;
+		}
+		return FeatureDictionary.getInstance().getIndex(feature) + 1;
+	}
+}
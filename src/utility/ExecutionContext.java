@@ -0,0 +1,115 @@
+package utility;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import metrics.MetricsRegistry;
+
+/**
+ * A named, sized pool of threads in which the Model, the scorers and the
+ * samplers run their parallel computations instead of the JVM-wide common
+ * ForkJoinPool. Implementations are provided by ExecutionContexts. </br>
+ * Data parallel computations (parallel streams) are started with
+ * <b>call()</b> or <b>run()</b> and always run in a ForkJoinPool of the
+ * context. Independent tasks that may block, e.g. the computation of the
+ * objective scores of states, are started with <b>forEach()</b> and run
+ * either in the same pool (platform threads) or in virtual threads, depending
+ * on the variant of the context.
+ */
+public interface ExecutionContext {
+
+	public String getName();
+
+	/**
+	 * Returns the maximum number of threads that run computations of this
+	 * context at the same time.
+	 *
+	 * @return
+	 */
+	public int getParallelism();
+
+	/**
+	 * Returns true if the tasks of <b>forEach()</b> run in virtual threads.
+	 *
+	 * @return
+	 */
+	public boolean isVirtual();
+
+	/**
+	 * Runs the given computation in this context and returns its result.
+	 * Parallel streams that are used by the computation run in the threads of
+	 * this context. If the current thread already belongs to this context, the
+	 * computation is run directly.
+	 *
+	 * @param computation
+	 * @return
+	 */
+	public <R> R call(Supplier<R> computation);
+
+	/**
+	 * Runs the given computation in this context (see <b>call()</b>).
+	 *
+	 * @param computation
+	 */
+	public default void run(Runnable computation) {
+		call(() -> {
+			computation.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Applies the given action to all elements as independent tasks of this
+	 * context and returns when all tasks are done.
+	 *
+	 * @param elements
+	 * @param action
+	 */
+	public <T> void forEach(Collection<T> elements, Consumer<? super T> action);
+
+	/**
+	 * Returns the number of tasks that were submitted to this context but did
+	 * not start yet.
+	 *
+	 * @return
+	 */
+	public long getQueueDepth();
+
+	/**
+	 * Returns the number of threads that currently run tasks of this context.
+	 *
+	 * @return
+	 */
+	public int getActiveThreadCount();
+
+	/**
+	 * Returns the fraction of the parallelism of this context that is
+	 * currently in use.
+	 *
+	 * @return
+	 */
+	public default double getUtilization() {
+		return Math.min(1.0, (double) getActiveThreadCount() / getParallelism());
+	}
+
+	/**
+	 * Registers the queue depth, the number of active threads and the
+	 * utilization of this context as gauges named
+	 * <i>executor.&lt;name&gt;.*</i> in the given registry, so that they are
+	 * part of its snapshots.
+	 *
+	 * @param metrics
+	 */
+	public default void registerMetrics(MetricsRegistry metrics) {
+		String prefix = "executor." + getName() + ".";
+		metrics.gauge(prefix + "queue.depth", this::getQueueDepth);
+		metrics.gauge(prefix + "active.threads", this::getActiveThreadCount);
+		metrics.gauge(prefix + "utilization", this::getUtilization);
+	}
+
+	/**
+	 * Stops the threads of this context after all submitted tasks are done.
+	 */
+	public void shutdown();
+}
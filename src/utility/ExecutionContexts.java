@@ -0,0 +1,276 @@
+package utility;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Provides the execution contexts of the framework (see ExecutionContext):
+ * <ul>
+ * <li><b>common()</b> runs all computations in the common ForkJoinPool, which
+ * is the default of the Model, the scorers and the samplers,</li>
+ * <li><b>platform()</b> runs all computations in a dedicated ForkJoinPool of
+ * platform threads,</li>
+ * <li><b>virtual()</b> runs parallel streams in a dedicated ForkJoinPool and
+ * the independent tasks of <b>forEach()</b> in virtual threads, e.g. for
+ * objective functions that wait for external resources.</li>
+ * </ul>
+ */
+public class ExecutionContexts {
+
+	private static Logger log = LogManager.getFormatterLogger();
+
+	private static final ExecutionContext COMMON = new ForkJoinContext("common", ForkJoinPool.commonPool(), true);
+
+	/**
+	 * Returns the context that runs all computations in the common
+	 * ForkJoinPool.
+	 *
+	 * @return
+	 */
+	public static ExecutionContext common() {
+		return COMMON;
+	}
+
+	/**
+	 * Creates a context with a dedicated ForkJoinPool of <i>parallelism</i>
+	 * platform threads named <i>&lt;name&gt;-worker-&lt;n&gt;</i>.
+	 *
+	 * @param name
+	 * @param parallelism
+	 * @return
+	 */
+	public static ExecutionContext platform(String name, int parallelism) {
+		return new ForkJoinContext(name, newForkJoinPool(name, parallelism), false);
+	}
+
+	/**
+	 * Creates a context that runs parallel streams in a dedicated ForkJoinPool
+	 * of <i>parallelism</i> platform threads and the tasks of
+	 * <b>forEach()</b> in virtual threads, of which at most
+	 * <i>parallelism</i> run at the same time. Virtual threads require Java 21
+	 * or later. On older JVMs, the tasks run in a fixed pool of
+	 * <i>parallelism</i> platform threads instead.
+	 *
+	 * @param name
+	 * @param parallelism
+	 * @return
+	 */
+	public static ExecutionContext virtual(String name, int parallelism) {
+		return new VirtualThreadContext(name, newForkJoinPool(name, parallelism), newVirtualThreadExecutor(name));
+	}
+
+	private static ForkJoinPool newForkJoinPool(String name, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism of an execution context must be positive.");
+		}
+		AtomicInteger threadCounter = new AtomicInteger();
+		return new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName(name + "-worker-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task. The
+	 * framework is compiled for Java 8, thus the API for virtual threads is
+	 * accessed via reflection. Returns null if it is not available.
+	 */
+	private static ExecutorService newVirtualThreadExecutor(String name) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-virtual-", 1L);
+			ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, threadFactory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.warn("Virtual threads are not available in this JVM. Execution context %s uses platform threads.",
+					name);
+			return null;
+		}
+	}
+
+	private static class ForkJoinContext implements ExecutionContext {
+
+		protected final String name;
+		protected final ForkJoinPool pool;
+		/**
+		 * True if the pool is shared with other components, i.e. if it is the
+		 * common pool.
+		 */
+		private final boolean shared;
+
+		public ForkJoinContext(String name, ForkJoinPool pool, boolean shared) {
+			this.name = name;
+			this.pool = pool;
+			this.shared = shared;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public int getParallelism() {
+			return pool.getParallelism();
+		}
+
+		@Override
+		public boolean isVirtual() {
+			return false;
+		}
+
+		@Override
+		public <R> R call(Supplier<R> computation) {
+			/*
+			 * Parallel streams run in the common pool unless they are started
+			 * from a worker thread of another pool.
+			 */
+			if (shared || isWorkerThread()) {
+				return computation.get();
+			}
+			return pool.submit(computation::get).join();
+		}
+
+		private boolean isWorkerThread() {
+			Thread thread = Thread.currentThread();
+			return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool;
+		}
+
+		@Override
+		public <T> void forEach(Collection<T> elements, Consumer<? super T> action) {
+			run(() -> elements.parallelStream().forEach(action));
+		}
+
+		@Override
+		public long getQueueDepth() {
+			return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+		}
+
+		@Override
+		public int getActiveThreadCount() {
+			return pool.getActiveThreadCount();
+		}
+
+		@Override
+		public void shutdown() {
+			if (!shared) {
+				pool.shutdown();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + " [name=" + name + ", parallelism=" + getParallelism()
+					+ ", queueDepth=" + getQueueDepth() + ", activeThreads=" + getActiveThreadCount() + "]";
+		}
+	}
+
+	private static class VirtualThreadContext extends ForkJoinContext {
+
+		private final ExecutorService taskExecutor;
+		private final boolean virtual;
+		/**
+		 * Limits the number of tasks that run in virtual threads at the same
+		 * time to the parallelism of this context, or null if the tasks run
+		 * in a fixed pool of platform threads.
+		 */
+		private final Semaphore permits;
+		private final AtomicInteger waitingTasks = new AtomicInteger();
+		private final AtomicInteger runningTasks = new AtomicInteger();
+
+		public VirtualThreadContext(String name, ForkJoinPool pool, ExecutorService virtualThreadExecutor) {
+			super(name, pool, false);
+			this.virtual = virtualThreadExecutor != null;
+			if (virtual) {
+				this.taskExecutor = virtualThreadExecutor;
+				this.permits = new Semaphore(pool.getParallelism());
+			} else {
+				AtomicInteger threadCounter = new AtomicInteger();
+				this.taskExecutor = Executors.newFixedThreadPool(pool.getParallelism(), r -> {
+					Thread thread = new Thread(r, name + "-task-" + threadCounter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+				this.permits = null;
+			}
+		}
+
+		@Override
+		public boolean isVirtual() {
+			return virtual;
+		}
+
+		@Override
+		public <T> void forEach(Collection<T> elements, Consumer<? super T> action) {
+			List<Future<?>> tasks = new ArrayList<>(elements.size());
+			for (T element : elements) {
+				waitingTasks.incrementAndGet();
+				tasks.add(taskExecutor.submit(() -> {
+					if (permits != null) {
+						permits.acquireUninterruptibly();
+					}
+					waitingTasks.decrementAndGet();
+					runningTasks.incrementAndGet();
+					try {
+						action.accept(element);
+					} finally {
+						runningTasks.decrementAndGet();
+						if (permits != null) {
+							permits.release();
+						}
+					}
+				}));
+			}
+			try {
+				for (Future<?> task : tasks) {
+					task.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("A task of execution context " + name + " was interrupted.", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("A task of execution context " + name + " failed.", e.getCause());
+			}
+		}
+
+		@Override
+		public long getQueueDepth() {
+			return super.getQueueDepth() + waitingTasks.get();
+		}
+
+		@Override
+		public int getActiveThreadCount() {
+			return super.getActiveThreadCount() + runningTasks.get();
+		}
+
+		@Override
+		public double getUtilization() {
+			return Math.min(1.0, (double) getActiveThreadCount() / (2 * getParallelism()));
+		}
+
+		@Override
+		public void shutdown() {
+			super.shutdown();
+			taskExecutor.shutdown();
+		}
+	}
+}
@@ -1,7 +1,12 @@
 package variables;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
@@ -10,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 import corpus.Instance;
 import factors.FactorGraph;
 import utility.StateID;
+import utility.VariableID;
 
 public abstract class AbstractState<InstanceT extends Instance> implements Serializable {
 
@@ -43,6 +49,11 @@ public abstract class AbstractState<InstanceT extends Instance> implements Seria
 	protected FactorGraph factorGraph = new FactorGraph();
 	protected final InstanceT instance;
 	protected final StateID id;
+	/**
+	 * The variables that were added, removed or modified since this state was
+	 * copied from its parent state or null if they are unknown.
+	 */
+	private transient Map<VariableID, AbstractVariable> changedVariables;
 
 	/**
 	 * The AbstractState is the super class of all state implementations. It
@@ -94,6 +105,45 @@ public abstract class AbstractState<InstanceT extends Instance> implements Seria
 		return modelScore;
 	}
 
+	/**
+	 * Reports that the given variable was added, removed or modified since
+	 * this state was copied from its parent state. Explorers should call this
+	 * method for every variable they change in a generated state. If all
+	 * changes of a state are reported, the Model only regenerates the factor
+	 * patterns that read the changed variables and reuses all other patterns
+	 * of the parent state (see
+	 * <b>AbstractTemplate.generateFactorPatterns(state, changedVariables)</b>).
+	 * 
+	 * @param variable
+	 */
+	public void markAsChanged(AbstractVariable variable) {
+		if (changedVariables == null) {
+			changedVariables = new LinkedHashMap<>();
+		}
+		changedVariables.put(variable.getID(), variable);
+	}
+
+	/**
+	 * Returns the variables that were reported to be changed since this state
+	 * was copied from its parent state or null if no changes were reported.
+	 * 
+	 * @return
+	 */
+	public Collection<AbstractVariable> getChangedVariables() {
+		return changedVariables != null ? Collections.unmodifiableCollection(changedVariables.values()) : null;
+	}
+
+	/**
+	 * Returns the IDs of the variables that were reported to be changed since
+	 * this state was copied from its parent state or null if no changes were
+	 * reported.
+	 * 
+	 * @return
+	 */
+	public Set<VariableID> getChangedVariableIDs() {
+		return changedVariables != null ? Collections.unmodifiableSet(changedVariables.keySet()) : null;
+	}
+
 	public FactorGraph getFactorGraph() {
 		return factorGraph;
 	}
@@ -14,6 +14,18 @@ public class AbstractVariable implements Serializable {
 		this.id = generateVariableID();
 	}
 
+	/**
+	 * Creates a variable with the given ID. Variables that are equal w.r.t.
+	 * equals() should have the same ID, since factor patterns and their
+	 * factors are identified by the IDs of their variables when variables
+	 * change (see FactorPattern.getVariableIDs()).
+	 * 
+	 * @param id
+	 */
+	protected AbstractVariable(VariableID id) {
+		this.id = id;
+	}
+
 	public VariableID getID() {
 		return id;
 	}
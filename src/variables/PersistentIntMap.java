@@ -0,0 +1,382 @@
+package variables;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable map from int keys to values, sorted by key. Modifications such
+ * as <b>put()</b> and <b>remove()</b> return a new map and leave this map
+ * unchanged. Both maps share all nodes that were not affected by the
+ * modification (structural sharing), so that a copy with one change costs
+ * O(log n) time and memory instead of O(n) for a copy of a TreeMap. </br>
+ * This allows states to share their variables with the states that were
+ * derived from them: the copy constructor of a state simply references the
+ * map of the original state and the explorer replaces it with a modified
+ * version. The map is implemented as an AVL tree with path copying.
+ *
+ * @param <V>
+ */
+public final class PersistentIntMap<V> implements Serializable {
+
+	@FunctionalInterface
+	public interface EntryConsumer<V> {
+		public void accept(int key, V value);
+	}
+
+	private static final class Node<V> implements Serializable {
+		private final int key;
+		private final V value;
+		private final Node<V> left;
+		private final Node<V> right;
+		private final int height;
+		private final int size;
+
+		private Node(int key, V value, Node<V> left, Node<V> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.size = size(left) + size(right) + 1;
+		}
+	}
+
+	private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null);
+
+	private final Node<V> root;
+
+	private PersistentIntMap(Node<V> root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns the empty map.
+	 *
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> PersistentIntMap<V> empty() {
+		return (PersistentIntMap<V>) EMPTY;
+	}
+
+	public int size() {
+		return size(root);
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Returns the value of the given key or null if this map does not contain
+	 * the key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public V get(int key) {
+		Node<V> node = root;
+		while (node != null) {
+			if (key < node.key) {
+				node = node.left;
+			} else if (key > node.key) {
+				node = node.right;
+			} else {
+				return node.value;
+			}
+		}
+		return null;
+	}
+
+	public boolean containsKey(int key) {
+		Node<V> node = root;
+		while (node != null) {
+			if (key < node.key) {
+				node = node.left;
+			} else if (key > node.key) {
+				node = node.right;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a map that contains all entries of this map and maps the given
+	 * key to the given value. If this map already maps the key to the same
+	 * value, this map is returned.
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	public PersistentIntMap<V> put(int key, V value) {
+		Node<V> newRoot = put(root, key, value);
+		return newRoot == root ? this : new PersistentIntMap<>(newRoot);
+	}
+
+	/**
+	 * Returns a map that contains all entries of this map except for the given
+	 * key. If this map does not contain the key, this map is returned.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public PersistentIntMap<V> remove(int key) {
+		Node<V> newRoot = remove(root, key);
+		return newRoot == root ? this : new PersistentIntMap<>(newRoot);
+	}
+
+	/**
+	 * Returns the smallest key of this map.
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 *             if this map is empty.
+	 */
+	public int firstKey() {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		Node<V> node = root;
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node.key;
+	}
+
+	/**
+	 * Returns the largest key of this map.
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 *             if this map is empty.
+	 */
+	public int lastKey() {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		Node<V> node = root;
+		while (node.right != null) {
+			node = node.right;
+		}
+		return node.key;
+	}
+
+	/**
+	 * Returns the largest key that is less than or equal to the given key or
+	 * null if there is no such key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public Integer floorKey(int key) {
+		Integer result = null;
+		Node<V> node = root;
+		while (node != null) {
+			if (key < node.key) {
+				node = node.left;
+			} else {
+				result = node.key;
+				node = node.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the smallest key that is greater than or equal to the given key
+	 * or null if there is no such key.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public Integer ceilingKey(int key) {
+		Integer result = null;
+		Node<V> node = root;
+		while (node != null) {
+			if (key > node.key) {
+				node = node.right;
+			} else {
+				result = node.key;
+				node = node.left;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Passes all entries of this map in ascending order of their keys to the
+	 * given consumer.
+	 *
+	 * @param consumer
+	 */
+	public void forEach(EntryConsumer<? super V> consumer) {
+		forEach(root, consumer);
+	}
+
+	/**
+	 * Returns all keys of this map in ascending order.
+	 *
+	 * @return
+	 */
+	public int[] keys() {
+		int[] keys = new int[size()];
+		int[] i = new int[1];
+		forEach((key, value) -> keys[i[0]++] = key);
+		return keys;
+	}
+
+	/**
+	 * Returns all values of this map in ascending order of their keys.
+	 *
+	 * @return
+	 */
+	public List<V> values() {
+		List<V> values = new ArrayList<>(size());
+		forEach((key, value) -> values.add(value));
+		return values;
+	}
+
+	/**
+	 * Returns the number of keys that are contained in this and the given map.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public int countCommonKeys(PersistentIntMap<?> other) {
+		PersistentIntMap<?> smaller = size() <= other.size() ? this : other;
+		PersistentIntMap<?> larger = smaller == this ? other : this;
+		int[] count = new int[1];
+		smaller.forEach((key, value) -> {
+			if (larger.containsKey(key)) {
+				count[0]++;
+			}
+		});
+		return count[0];
+	}
+
+	private static <V> void forEach(Node<V> node, EntryConsumer<? super V> consumer) {
+		while (node != null) {
+			forEach(node.left, consumer);
+			consumer.accept(node.key, node.value);
+			node = node.right;
+		}
+	}
+
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static <V> Node<V> put(Node<V> node, int key, V value) {
+		if (node == null) {
+			return new Node<>(key, value, null, null);
+		}
+		if (key < node.key) {
+			Node<V> left = put(node.left, key, value);
+			return left == node.left ? node : balance(node.key, node.value, left, node.right);
+		} else if (key > node.key) {
+			Node<V> right = put(node.right, key, value);
+			return right == node.right ? node : balance(node.key, node.value, node.left, right);
+		} else if (node.value == value) {
+			return node;
+		} else {
+			return new Node<>(key, value, node.left, node.right);
+		}
+	}
+
+	private static <V> Node<V> remove(Node<V> node, int key) {
+		if (node == null) {
+			return null;
+		}
+		if (key < node.key) {
+			Node<V> left = remove(node.left, key);
+			return left == node.left ? node : balance(node.key, node.value, left, node.right);
+		} else if (key > node.key) {
+			Node<V> right = remove(node.right, key);
+			return right == node.right ? node : balance(node.key, node.value, node.left, right);
+		} else if (node.left == null) {
+			return node.right;
+		} else if (node.right == null) {
+			return node.left;
+		} else {
+			Node<V> successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			return balance(successor.key, successor.value, node.left, remove(node.right, successor.key));
+		}
+	}
+
+	private static <V> Node<V> balance(int key, V value, Node<V> left, Node<V> right) {
+		int difference = height(left) - height(right);
+		if (difference > 1) {
+			if (height(left.left) < height(left.right)) {
+				left = rotateLeft(left.key, left.value, left.left, left.right);
+			}
+			return rotateRight(key, value, left, right);
+		} else if (difference < -1) {
+			if (height(right.right) < height(right.left)) {
+				right = rotateRight(right.key, right.value, right.left, right.right);
+			}
+			return rotateLeft(key, value, left, right);
+		}
+		return new Node<>(key, value, left, right);
+	}
+
+	private static <V> Node<V> rotateLeft(int key, V value, Node<V> left, Node<V> right) {
+		return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+	}
+
+	private static <V> Node<V> rotateRight(int key, V value, Node<V> left, Node<V> right) {
+		return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof PersistentIntMap))
+			return false;
+		PersistentIntMap<?> other = (PersistentIntMap<?>) obj;
+		if (size() != other.size())
+			return false;
+		int[] keys = keys();
+		List<?> values = values();
+		int[] otherKeys = other.keys();
+		List<?> otherValues = other.values();
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != otherKeys[i] || !Objects.equals(values.get(i), otherValues.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int[] hash = new int[1];
+		forEach((key, value) -> hash[0] += key ^ Objects.hashCode(value));
+		return hash[0];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("{");
+		forEach((key, value) -> {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(key).append("=").append(value);
+		});
+		return builder.append("}").toString();
+	}
+}
@@ -0,0 +1,182 @@
+package variables;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, sorted set of ints with O(log n) copies with one change (see
+ * PersistentIntMap). <b>add()</b> and <b>remove()</b> return a new set that
+ * shares most of its structure with this set.
+ */
+public final class PersistentIntSet implements Serializable {
+
+	private static final PersistentIntSet EMPTY = new PersistentIntSet(PersistentIntMap.empty());
+
+	private final PersistentIntMap<Boolean> elements;
+
+	private PersistentIntSet(PersistentIntMap<Boolean> elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * Returns the empty set.
+	 *
+	 * @return
+	 */
+	public static PersistentIntSet empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Returns a set that contains the given elements.
+	 *
+	 * @param elements
+	 * @return
+	 */
+	public static PersistentIntSet of(int... elements) {
+		PersistentIntSet set = EMPTY;
+		for (int element : elements) {
+			set = set.add(element);
+		}
+		return set;
+	}
+
+	public int size() {
+		return elements.size();
+	}
+
+	public boolean isEmpty() {
+		return elements.isEmpty();
+	}
+
+	public boolean contains(int element) {
+		return elements.containsKey(element);
+	}
+
+	/**
+	 * Returns a set that contains all elements of this set and the given
+	 * element. If this set already contains the element, this set is
+	 * returned.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public PersistentIntSet add(int element) {
+		PersistentIntMap<Boolean> newElements = elements.put(element, Boolean.TRUE);
+		return newElements == elements ? this : new PersistentIntSet(newElements);
+	}
+
+	/**
+	 * Returns a set that contains all elements of this set except for the
+	 * given element. If this set does not contain the element, this set is
+	 * returned.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public PersistentIntSet remove(int element) {
+		PersistentIntMap<Boolean> newElements = elements.remove(element);
+		return newElements == elements ? this : new PersistentIntSet(newElements);
+	}
+
+	/**
+	 * Returns the smallest element of this set.
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 *             if this set is empty.
+	 */
+	public int first() {
+		return elements.firstKey();
+	}
+
+	/**
+	 * Returns the largest element of this set.
+	 *
+	 * @return
+	 * @throws NoSuchElementException
+	 *             if this set is empty.
+	 */
+	public int last() {
+		return elements.lastKey();
+	}
+
+	/**
+	 * Returns the largest element that is less than or equal to the given
+	 * element or null if there is no such element.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public Integer floor(int element) {
+		return elements.floorKey(element);
+	}
+
+	/**
+	 * Returns the smallest element that is greater than or equal to the given
+	 * element or null if there is no such element.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public Integer ceiling(int element) {
+		return elements.ceilingKey(element);
+	}
+
+	/**
+	 * Passes all elements of this set in ascending order to the given
+	 * consumer.
+	 *
+	 * @param consumer
+	 */
+	public void forEach(IntConsumer consumer) {
+		elements.forEach((element, value) -> consumer.accept(element));
+	}
+
+	/**
+	 * Returns all elements of this set in ascending order.
+	 *
+	 * @return
+	 */
+	public int[] toArray() {
+		return elements.keys();
+	}
+
+	/**
+	 * Returns the number of elements that are contained in this and the given
+	 * set.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public int countCommonElements(PersistentIntSet other) {
+		return elements.countCommonKeys(other.elements);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof PersistentIntSet))
+			return false;
+		return elements.equals(((PersistentIntSet) obj).elements);
+	}
+
+	@Override
+	public int hashCode() {
+		return elements.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		forEach(element -> {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(element);
+		});
+		return builder.append("]").toString();
+	}
+}